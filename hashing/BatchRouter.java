@@ -0,0 +1,28 @@
+package hashing;
+
+/**
+ * Reusable buffer for routing a batch of keys over a TokenRing.
+ *
+ * Keys are routed in blocks of BLOCK: the whole block is hashed first, then every hash is resolved through the
+ * ring's bucket index. The lookups of a block do not depend on each other, so the CPU overlaps their memory
+ * accesses instead of waiting for each key's hash and bucket read in turn, as a loop of route() calls does.
+ * Not thread-safe: one instance per thread / ForkJoin task.
+ */
+final class BatchRouter {
+    private static final int BLOCK = 256;
+
+    private final long[] hashes = new long[BLOCK];
+
+    /** ownerOut[i] = ring owner slot of keys[i], for i in [from, to). */
+    void route(String[] keys, int from, int to, TokenRing ring, int[] ownerOut) {
+        for (int start = from; start < to; start += BLOCK) {
+            int n = Math.min(BLOCK, to - start);
+            for (int i = 0; i < n; i++) {
+                hashes[i] = Hash64.hash(keys[start + i]);
+            }
+            for (int i = 0; i < n; i++) {
+                ownerOut[start + i] = ring.ownerOf(hashes[i]);
+            }
+        }
+    }
+}
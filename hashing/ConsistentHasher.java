@@ -1,32 +1,210 @@
 package hashing;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-public class ConsistentHasher {
+public class ConsistentHasher implements KeyRouter {
     public static class Server {
         public String name;
         public int id;
-        public Map<BigInteger, String> storage = new HashMap<>();
+        public double weight = 1.0;
+        public int vNodeCount; // vnodes 0..vNodeCount-1 are on the ring, round(virtualNodeCountPerServer * weight)
+        // sorted by token, so a join/leave moves whole contiguous ranges (subMap) instead of scanning every key
+        public NavigableMap<BigInteger, String> storage = new TreeMap<>();
 
         public Server(String name, int id){
             this.name = name;
             this.id = id;
         }
+
+        /** Live key count, including keys spilled here by the bounded-load mode. */
+        public int getLoad(){
+            return storage.size();
+        }
+    }
+
+    public static class LoadStats {
+        public final Map<String, Integer> loadByServer;
+        public final double averageLoad;
+        public final int maxLoad;
+        public final long placements;   // new keys placed since the hasher was created
+        public final long spills;       // of those, placed past a full owner
+        public final int spilledKeys;   // keys currently living away from their ring owner
+
+        LoadStats(Map<String, Integer> loadByServer, long placements, long spills, int spilledKeys){
+            this.loadByServer = loadByServer;
+            int max = 0;
+            long total = 0;
+            for(int load : loadByServer.values()){
+                max = Math.max(max, load);
+                total += load;
+            }
+            this.averageLoad = loadByServer.isEmpty() ? 0 : (double) total / loadByServer.size();
+            this.maxLoad = max;
+            this.placements = placements;
+            this.spills = spills;
+            this.spilledKeys = spilledKeys;
+        }
+
+        public double getSpillRate(){
+            return placements == 0 ? 0 : (double) spills / placements;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("loads=%s avg=%.1f max=%d (%.2fx avg) spillRate=%.2f%% spilledKeys=%d",
+                loadByServer, averageLoad, maxLoad, averageLoad == 0 ? 0 : maxLoad / averageLoad, getSpillRate() * 100, spilledKeys);
+        }
+    }
+
+    /**
+     * BIG_INTEGER is the original SHA-1 ring on a TreeMap, kept for compatibility (same placements as before).
+     * LONG_64 hashes with Hash64 and routes over a sorted long[] TokenRing, no digest and no allocation per lookup.
+     * The allocation-free part is routing (getServer, route, routeBatch, getPreferenceList). add, get and remove
+     * still box the 64-bit token into a BigInteger per key, because Server.storage, the spill map and the migration's
+     * range views are keyed by BigInteger in both modes; add also allocates its TreeMap entry.
+     */
+    public enum RingMode {
+        BIG_INTEGER,
+        LONG_64
     }
 
+    private static final int PARALLEL_BATCH_CHUNK = 1 << 13;
+    private static final ThreadLocal<BatchRouter> BATCH_ROUTERS = ThreadLocal.withInitial(BatchRouter::new);
+
     private final int virtualNodeCountPerServer;
+    private final RingMode mode;
     private final TreeMap<BigInteger, Server> hashRing = new TreeMap<>();
     private final HashSet<Integer> serverIds = new HashSet<>();
     private final MessageDigest md;
 
+    // LONG_64 mode: ring owners are slots in this array
+    private TokenRing tokenRing = TokenRing.EMPTY;
+    private Server[] slots = new Server[8];
+
+    // at most one membership change streams its keys at a time, the next one drains it first
+    private Migration pending;
+
+    // bounded loads ("consistent hashing with bounded loads"): disabled while epsilon < 0
+    private double loadEpsilon = -1;
+    private long totalKeys;
+    private long placements;
+    private long spills;
+    // keys not stored on their ring owner, so a lookup stays one ring search plus one hash probe
+    private final Map<BigInteger, Server> spilled = new HashMap<>();
+
+    /** Half-open token range (start, end] moving between two servers. A null bound means the end of the token space. */
+    private static class Range {
+        final BigInteger start;
+        final BigInteger end;
+        final Server source;
+        final Server target;
+
+        Range(BigInteger start, BigInteger end, Server source, Server target){
+            this.start = start;
+            this.end = end;
+            this.source = source;
+            this.target = target;
+        }
+
+        NavigableMap<BigInteger, String> view(NavigableMap<BigInteger, String> storage){
+            if(start == null) return storage.headMap(end, true);
+            if(end == null) return storage.tailMap(start, false);
+            return storage.subMap(start, false, end, true);
+        }
+
+        boolean contains(BigInteger token){
+            return (start == null || token.compareTo(start) > 0) && (end == null || token.compareTo(end) <= 0);
+        }
+    }
+
+    /**
+     * Keys still to be streamed after a server joined or left. The ring is switched before the migration starts,
+     * so new writes already land on the new owner; reads and removes also look at the old owner of a pending range.
+     * step() moves a bounded batch so callers can interleave migration with normal traffic.
+     */
+    public class Migration {
+        private final Deque<Range> ranges;
+        private final int totalRanges;
+        private long movedKeys;
+
+        private Migration(Deque<Range> ranges){
+            this.ranges = ranges;
+            this.totalRanges = ranges.size();
+        }
+
+        /** Moves up to maxKeys keys, returns how many were moved. */
+        public int step(int maxKeys){
+            int moved = 0;
+            while(moved < maxKeys && !ranges.isEmpty()){
+                Range range = ranges.peekFirst();
+                NavigableMap<BigInteger, String> view = range.view(range.source.storage);
+                Entry<BigInteger, String> e;
+                while(moved < maxKeys && (e = view.pollFirstEntry()) != null){
+                    range.target.storage.put(e.getKey(), e.getValue());
+                    if(!spilled.isEmpty()){
+                        spilled.remove(e.getKey()); // the target owns the range, so the key is home now
+                    }
+                    moved++;
+                }
+                if(view.isEmpty()){
+                    ranges.pollFirst();
+                }
+            }
+
+            movedKeys += moved;
+            if(ranges.isEmpty()){
+                finish();
+            }
+            return moved;
+        }
+
+        private void finish(){
+            if(pending == this){
+                pending = null;
+                restoreLoadBound();
+            }
+        }
+
+        public void drain(){
+            while(!isDone()){
+                step(Integer.MAX_VALUE);
+            }
+        }
+
+        public boolean isDone(){
+            return ranges.isEmpty();
+        }
+
+        public long getMovedKeys(){
+            return movedKeys;
+        }
+
+        public int getCompletedRanges(){
+            return totalRanges - ranges.size();
+        }
+
+        public int getTotalRanges(){
+            return totalRanges;
+        }
+    }
+
     public ConsistentHasher(int virtualNodeCountPerServer) throws NoSuchAlgorithmException {
+        this(virtualNodeCountPerServer, RingMode.BIG_INTEGER);
+    }
+
+    public ConsistentHasher(int virtualNodeCountPerServer, RingMode mode) throws NoSuchAlgorithmException {
         this.virtualNodeCountPerServer = virtualNodeCountPerServer;
-        md = MessageDigest.getInstance("SHA-1");
-    }   
+        this.mode = mode;
+        md = mode == RingMode.BIG_INTEGER ? MessageDigest.getInstance("SHA-1") : null;
+    }
 
 
     private BigInteger hash(String key){
@@ -34,22 +212,306 @@ public class ConsistentHasher {
         return new BigInteger(1, digest);
     }
 
+    /**
+     * Server owning the key. In LONG_64 mode this is a char-wise hash plus one bucket index lookup, nothing is allocated.
+     */
+    public Server getServer(String key){
+        if(serverIds.size() == 0){
+            throw new IllegalStateException("Currently no server exist, Please add a server!");
+        }
+
+        if(mode == RingMode.LONG_64){
+            return slots[tokenRing.ownerOf(Hash64.hash(key))];
+        }
+        return findNextServerPosition(hash(key)).getValue();
+    }
+
+    /**
+     * First n distinct servers clockwise from the key (the owner first), i.e. where its replicas live.
+     * LONG_64 reads one row of the ring's successor table; BIG_INTEGER walks the TreeMap skipping repeated servers.
+     */
+    public List<Server> getPreferenceList(String key, int n){
+        if(serverIds.size() == 0){
+            throw new IllegalStateException("Currently no server exist, Please add a server!");
+        }
+
+        n = Math.min(n, serverIds.size());
+        List<Server> result = new ArrayList<>(n);
+        if(mode == RingMode.LONG_64){
+            TokenRing.Successors successors = tokenRing.successors(n);
+            int index = tokenRing.ceilingIndex(Hash64.hash(key));
+            for(int rank = 0; rank < n; rank++){
+                result.add(slots[successors.ownerAt(index, rank)]);
+            }
+            return result;
+        }
+
+        BigInteger h = hash(key);
+        Set<Integer> added = new HashSet<>();
+        for(Iterator<Server> it = clockwise(h); it.hasNext() && result.size() < n; ){
+            Server s = it.next();
+            if(added.add(s.id)){
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    private Iterator<Server> clockwise(BigInteger position){
+        Iterator<Server> tail = hashRing.tailMap(position, true).values().iterator();
+        Iterator<Server> head = hashRing.headMap(position, false).values().iterator();
+        return new Iterator<Server>() {
+            public boolean hasNext(){
+                return tail.hasNext() || head.hasNext();
+            }
+
+            public Server next(){
+                return tail.hasNext() ? tail.next() : head.next();
+            }
+        };
+    }
+
+    // storage key of a key: the SHA-1 value in BIG_INTEGER mode, the 64-bit token in LONG_64 mode (same order as the ring),
+    // boxed in a BigInteger either way, one allocation per stored, read or removed key
+    private BigInteger storageToken(String key){
+        return mode == RingMode.LONG_64 ? BigInteger.valueOf(Hash64.hash(key)) : hash(key);
+    }
+
+    private Server ownerOf(BigInteger token){
+        if(mode == RingMode.LONG_64){
+            return slots[tokenRing.ownerOf(token.longValue())];
+        }
+        return findNextServerPosition(token).getValue();
+    }
+
+    /**
+     * Turns on bounded loads: a new key is never placed on a server already holding ceil((1 + epsilon) * average) keys,
+     * it spills clockwise to the next server under that cap. A join, leave or reweight moves the average and the ranges,
+     * so once its migration completes the keys over the new cap are spilled again and the bound holds. While a
+     * migration is in progress, and after keys are removed (which lowers the average), a server may sit above it.
+     */
+    public void enableBoundedLoads(double epsilon){
+        if(epsilon < 0){
+            throw new IllegalArgumentException("epsilon must be >= 0");
+        }
+        this.loadEpsilon = epsilon;
+    }
+
+    @Override
+    public int route(String key){
+        return getServer(key).id;
+    }
+
+    /**
+     * Server id for every key, the same answer as route(key) one by one. In LONG_64 mode keys are hashed a block at
+     * a time into a reused buffer and then resolved together, so their ring lookups overlap. That pays off once the
+     * ring outgrows the CPU caches (about 2x with 1000 servers); on a small ring it is no faster than route().
+     */
+    public int[] routeBatch(String[] keys){
+        if(serverIds.size() == 0){
+            throw new IllegalStateException("Currently no server exist, Please add a server!");
+        }
+
+        int[] result = new int[keys.length];
+        if(mode == RingMode.LONG_64){
+            BATCH_ROUTERS.get().route(keys, 0, keys.length, tokenRing, result);
+            toServerIds(result, 0, result.length, slotIds());
+            return result;
+        }
+
+        for(int i = 0; i < keys.length; i++){
+            result[i] = getServer(keys[i]).id;
+        }
+        return result;
+    }
+
+    /** Same as routeBatch(keys), large LONG_64 batches are split into chunks routed on the pool. */
+    public int[] routeBatch(String[] keys, ForkJoinPool pool){
+        if(mode != RingMode.LONG_64 || keys.length <= PARALLEL_BATCH_CHUNK || serverIds.size() == 0){
+            return routeBatch(keys);
+        }
+
+        int[] result = new int[keys.length];
+        pool.invoke(new RouteTask(keys, 0, keys.length, tokenRing, slotIds(), result));
+        return result;
+    }
+
+    private static class RouteTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] keys;
+        private final int from;
+        private final int to;
+        private final TokenRing ring;
+        private final int[] slotIds;
+        private final int[] result;
+
+        RouteTask(String[] keys, int from, int to, TokenRing ring, int[] slotIds, int[] result){
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+            this.ring = ring;
+            this.slotIds = slotIds;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from <= PARALLEL_BATCH_CHUNK){
+                BATCH_ROUTERS.get().route(keys, from, to, ring, result);
+                toServerIds(result, from, to, slotIds);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RouteTask(keys, from, mid, ring, slotIds, result), new RouteTask(keys, mid, to, ring, slotIds, result));
+        }
+    }
+
+    private int[] slotIds(){
+        int[] ids = new int[slots.length];
+        for(int i = 0; i < slots.length; i++){
+            ids[i] = slots[i] == null ? -1 : slots[i].id;
+        }
+        return ids;
+    }
+
+    private static void toServerIds(int[] owners, int from, int to, int[] slotIds){
+        for(int i = from; i < to; i++){
+            owners[i] = slotIds[owners[i]];
+        }
+    }
+
     public void add(String key, String value){
         if(serverIds.size() == 0){
             throw new IllegalStateException("Currently no server exist to add value, Please add a server to add value!");
         }
 
-        BigInteger h = hash(key);
-        Server server = findNextServerPosition(h).getValue();
+        BigInteger h = storageToken(key);
+        Server spilledTo = spilled.get(h);
+        if(spilledTo != null){
+            spilledTo.storage.put(h, value);
+            return;
+        }
+
+        Server server = ownerOf(h);
+        // removing the pending copy also keeps a stale value from being streamed over the new one
+        boolean isNew = !server.storage.containsKey(h) && (pending == null || removeFromPendingSource(h) == null);
+        if(isNew){
+            totalKeys++;
+            placements++;
+            if(loadEpsilon >= 0){
+                Server target = firstUnderCapacity(h, server);
+                if(target != server){
+                    spills++;
+                    spilled.put(h, target);
+                    target.storage.put(h, value);
+                    return;
+                }
+            }
+        }
         server.storage.put(h, value);
     }
 
-    private boolean isKeyInRange(BigInteger key, BigInteger start, BigInteger end){
-        if(start.compareTo(end) < 0){
-            return key.compareTo(start) > 0 && key.compareTo(end) <= 0;
-        } else { // wrap-around
-            return key.compareTo(start) > 0 || key.compareTo(end) <= 0;
+    private long loadCapacity(){
+        return (long) Math.ceil((1 + loadEpsilon) * totalKeys / serverIds.size());
+    }
+
+    // owner first, then clockwise; some server is always under the cap because the caps add up to more than totalKeys
+    private Server firstUnderCapacity(BigInteger h, Server owner){
+        long capacity = loadCapacity();
+        if(owner.storage.size() < capacity){
+            return owner;
+        }
+
+        if(mode == RingMode.LONG_64){
+            int index = tokenRing.ceilingIndex(h.longValue());
+            for(int step = 0; step < tokenRing.size(); step++, index = tokenRing.nextIndex(index)){
+                Server s = slots[tokenRing.ownerAt(index)];
+                if(s.storage.size() < capacity) return s;
+            }
+        } else {
+            for(Iterator<Server> it = clockwise(h); it.hasNext(); ){
+                Server s = it.next();
+                if(s.storage.size() < capacity) return s;
+            }
+        }
+        return owner;
+    }
+
+    // every server back under the cap after a membership change: keys spilled here leave first (they are not home
+    // anyway), then keys owned here, each to the first server under the cap clockwise from its owner
+    private void restoreLoadBound(){
+        if(loadEpsilon < 0 || serverIds.isEmpty()){
+            return;
+        }
+        long capacity = loadCapacity();
+        for(Server s : servers()){
+            long excess = s.storage.size() - capacity;
+            if(excess <= 0) continue;
+
+            List<BigInteger> leaving = new ArrayList<>();
+            for(Entry<BigInteger, Server> e : spilled.entrySet()){
+                if(leaving.size() == excess) break;
+                if(e.getValue() == s) leaving.add(e.getKey());
+            }
+            for(BigInteger token : s.storage.keySet()){
+                if(leaving.size() == excess) break;
+                if(spilled.get(token) != s) leaving.add(token);
+            }
+
+            for(BigInteger token : leaving){
+                Server owner = ownerOf(token);
+                Server target = firstUnderCapacity(token, owner);
+                if(target == s) continue; // cannot happen while the caps add up to more than totalKeys
+                target.storage.put(token, s.storage.remove(token));
+                if(target == owner){
+                    spilled.remove(token);
+                } else {
+                    spilled.put(token, target);
+                }
+            }
+        }
+    }
+
+    public LoadStats getLoadStats(){
+        Map<String, Integer> loads = new LinkedHashMap<>();
+        for(Server s : servers()){
+            loads.put(s.name, s.getLoad());
         }
+        return new LoadStats(loads, placements, spills, spilled.size());
+    }
+
+    private List<Server> servers(){
+        List<Server> result = new ArrayList<>();
+        if(mode == RingMode.LONG_64){
+            for(Server s : slots){
+                if(s != null) result.add(s);
+            }
+        } else {
+            Set<Server> seen = new LinkedHashSet<>(hashRing.values());
+            result.addAll(seen);
+        }
+        return result;
+    }
+
+    public String get(String key){
+        if(serverIds.size() == 0){
+            throw new IllegalStateException("Currently no server exist, Please add a server!");
+        }
+
+        BigInteger h = storageToken(key);
+        Server spilledTo = spilled.get(h);
+        if(spilledTo != null){
+            return spilledTo.storage.get(h);
+        }
+
+        String value = ownerOf(h).storage.get(h);
+        if(value == null && pending != null){
+            for(Range range : pending.ranges){
+                if(range.contains(h)) return range.source.storage.get(h);
+            }
+        }
+        return value;
     }
 
     public void remove(String key){
@@ -57,30 +519,229 @@ public class ConsistentHasher {
             throw new IllegalStateException("Currently no server exist to remove value, Please add a server!");
         }
 
-        BigInteger h = hash(key);
-        Server server = findNextServerPosition(h).getValue();
-        server.storage.remove(h);
+        BigInteger h = storageToken(key);
+        Server spilledTo = spilled.remove(h);
+        if(spilledTo != null){
+            spilledTo.storage.remove(h);
+            totalKeys--;
+            return;
+        }
+
+        Server server = ownerOf(h);
+        String removed = server.storage.remove(h);
+        if(pending != null){
+            String stale = removeFromPendingSource(h);
+            removed = removed != null ? removed : stale;
+        }
+        if(removed != null){
+            totalKeys--;
+        }
+    }
+
+    private String removeFromPendingSource(BigInteger h){
+        for(Range range : pending.ranges){
+            if(range.contains(h)) return range.source.storage.remove(h);
+        }
+        return null;
     }
 
+    @Override
     public void addServer(String name, int id) {
+        addServer(name, id, 1.0);
+    }
+
+    /** Server with weight times the default vnode count, so it takes a proportional share of the keys. */
+    public void addServer(String name, int id, double weight) {
+        beginAddServer(name, id, weight).drain();
+    }
+
+    /**
+     * Puts the server on the ring right away and returns the migration that streams its key ranges over.
+     * Call step() on it in batches (or drain()), lookups keep working while it is in progress.
+     */
+    public Migration beginAddServer(String name, int id) {
+        return beginAddServer(name, id, 1.0);
+    }
+
+    public Migration beginAddServer(String name, int id, double weight) {
         if(serverIds.contains(id)){
             throw new IllegalArgumentException(String.format("Server with id {} already exist. Please provide unique server id", id));
         }
+        int vNodes = vNodesFor(weight);
+        if(pending != null){
+            pending.drain();
+        }
 
         Server s = new Server(name, id);
-        for(int i = 0; i < virtualNodeCountPerServer; i++){
-            String vNodeId = virtualNodeId(id, i);
-            BigInteger h = hash(vNodeId);
-            Entry<BigInteger, Server> srcNode = findPrevServerPosition(h);
-            hashRing.put(h, s);
-            if(srcNode == null){
+        s.weight = weight;
+        s.vNodeCount = vNodes;
+        if(mode == RingMode.LONG_64){
+            int slot = freeSlot(); // may grow slots, so not inlined into the index expression
+            slots[slot] = s;
+        }
+        placeVNodes(s, 0, vNodes);
+        serverIds.add(id);
+
+        return startMigration(rangesOf(s, vNodeStorageTokens(id, 0, vNodes), true));
+    }
+
+    public void reweight(int id, double newWeight) {
+        beginReweight(id, newWeight).drain();
+    }
+
+    /**
+     * Changes the server's weight by adding or removing only the delta vnodes (the highest vnode ids),
+     * so just the ranges of those vnodes move.
+     */
+    public Migration beginReweight(int id, double newWeight) {
+        if(!serverIds.contains(id)){
+            throw new IllegalArgumentException(String.format("Server with id {} not found", id));
+        }
+        int newCount = vNodesFor(newWeight);
+        if(pending != null){
+            pending.drain();
+        }
+
+        Server s = serverById(id);
+        int oldCount = s.vNodeCount;
+        s.weight = newWeight;
+        Deque<Range> ranges = new ArrayDeque<>();
+        if(newCount > oldCount){
+            placeVNodes(s, oldCount, newCount);
+            ranges = rangesOf(s, vNodeStorageTokens(id, oldCount, newCount), true);
+        } else if(newCount < oldCount){
+            ranges = rangesOf(s, vNodeStorageTokens(id, newCount, oldCount), false);
+            takeVNodes(s, newCount, oldCount);
+        }
+        s.vNodeCount = newCount;
+
+        return startMigration(ranges);
+    }
+
+    private int vNodesFor(double weight){
+        if(!(weight > 0)){
+            throw new IllegalArgumentException("Server weight must be positive");
+        }
+        return Math.max(1, (int) Math.round(virtualNodeCountPerServer * weight));
+    }
+
+    private Server serverById(int id){
+        if(mode == RingMode.LONG_64){
+            return slots[slotOf(id)];
+        }
+        return hashRing.get(hash(virtualNodeId(id, 0))); // every server keeps at least vnode 0
+    }
+
+    // ring tokens of vnodes [from, to) in storage form, i.e. comparable with Server.storage keys
+    private Set<BigInteger> vNodeStorageTokens(int id, int from, int to){
+        Set<BigInteger> tokens = new HashSet<>();
+        for(int i = from; i < to; i++){
+            tokens.add(mode == RingMode.LONG_64 ? BigInteger.valueOf(TokenRing.vNodeToken(id, i)) : hash(virtualNodeId(id, i)));
+        }
+        return tokens;
+    }
+
+    private void placeVNodes(Server s, int from, int to){
+        if(mode == RingMode.LONG_64){
+            long[] tokens = new long[to - from];
+            for(int i = from; i < to; i++){
+                tokens[i - from] = TokenRing.vNodeToken(s.id, i);
+            }
+            tokenRing = tokenRing.withTokens(tokens, slotOf(s.id));
+        } else {
+            for(int i = from; i < to; i++){
+                hashRing.put(hash(virtualNodeId(s.id, i)), s);
+            }
+        }
+    }
+
+    private void takeVNodes(Server s, int from, int to){
+        if(mode == RingMode.LONG_64){
+            long[] tokens = new long[to - from];
+            for(int i = from; i < to; i++){
+                tokens[i - from] = TokenRing.vNodeToken(s.id, i);
+            }
+            tokenRing = tokenRing.withoutTokens(tokens);
+        } else {
+            for(int i = from; i < to; i++){
+                hashRing.remove(hash(virtualNodeId(s.id, i)));
+            }
+        }
+    }
+
+    private List<Entry<BigInteger, Server>> ringEntries(){
+        if(mode == RingMode.BIG_INTEGER){
+            return new ArrayList<>(hashRing.entrySet());
+        }
+
+        List<Entry<BigInteger, Server>> entries = new ArrayList<>(tokenRing.size());
+        for(int i = 0; i < tokenRing.size(); i++){
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(BigInteger.valueOf(tokenRing.tokenAt(i)), slots[tokenRing.ownerAt(i)]));
+        }
+        return entries;
+    }
+
+    /**
+     * Token ranges covered by the changing vnodes of s, on the current ring (which contains them). A run of
+     * consecutive changing vnodes covers (token before the run, last token of the run] and its other side is the
+     * owner right after the run, so the whole run is one contiguous range: joining pulls it from that owner,
+     * leaving hands it to that owner. Runs whose other side is s itself (reweight) need no move.
+     */
+    private Deque<Range> rangesOf(Server s, Set<BigInteger> changing, boolean joining){
+        List<Entry<BigInteger, Server>> ring = ringEntries();
+        int n = ring.size();
+        int anchor = -1;
+        for(int i = 0; i < n && anchor < 0; i++){
+            if(!changing.contains(ring.get(i).getKey())) anchor = i;
+        }
+
+        Deque<Range> ranges = new ArrayDeque<>();
+        if(anchor < 0){
+            return ranges; // only the changing vnodes are on the ring, nothing to move
+        }
+
+        int runStart = -1;
+        for(int step = 1; step <= n; step++){
+            int i = (anchor + step) % n;
+            Server owner = ring.get(i).getValue();
+            if(changing.contains(ring.get(i).getKey())){
+                if(runStart < 0) runStart = i;
                 continue;
             }
+            if(runStart >= 0 && owner == s){
+                runStart = -1;
+            }
+            if(runStart >= 0){
+                BigInteger start = ring.get((runStart - 1 + n) % n).getKey();
+                BigInteger end = ring.get((i - 1 + n) % n).getKey();
+                Server source = joining ? owner : s;
+                Server target = joining ? s : owner;
+                if(start.compareTo(end) < 0){
+                    ranges.add(new Range(start, end, source, target));
+                } else { // wrap-around
+                    ranges.add(new Range(start, null, source, target));
+                    ranges.add(new Range(null, end, source, target));
+                }
+                runStart = -1;
+            }
+        }
+        return ranges;
+    }
 
-            moveValuesToNewServer(h, s, srcNode);
+    private int freeSlot(){
+        for(int i = 0; i < slots.length; i++){
+            if(slots[i] == null) return i;
         }
+        int slot = slots.length;
+        slots = Arrays.copyOf(slots, slots.length * 2);
+        return slot;
+    }
 
-        serverIds.add(id);
+    private int slotOf(int id){
+        for(int i = 0; i < slots.length; i++){
+            if(slots[i] != null && slots[i].id == id) return i;
+        }
+        return -1;
     }
 
     private Entry<BigInteger, Server> findNextServerPosition(BigInteger position){
@@ -89,26 +750,20 @@ public class ConsistentHasher {
         return Optional.ofNullable(greater).orElse(lowest);
     }
 
-    private Entry<BigInteger, Server> findPrevServerPosition(BigInteger position){
-        Entry<BigInteger, Server> previous = hashRing.lowerEntry(position);
-        Entry<BigInteger, Server> greatest = hashRing.lastEntry();
-        return Optional.ofNullable(previous).orElse(greatest);
+    @Override
+    public void removeServer(int id) {
+        removeServer(id, false);
     }
 
-    private void moveValuesToNewServer(BigInteger hash, Server s, Entry<BigInteger, Server> srcNode){
-        Server prevServer = srcNode.getValue();
-        Iterator<Map.Entry<BigInteger, String>> it = prevServer.storage.entrySet().iterator();
-        while(it.hasNext()){
-            Map.Entry<BigInteger, String> entry = it.next();
-            BigInteger keyHash = entry.getKey();                
-            if(isKeyInRange(keyHash, srcNode.getKey(), hash)){
-                s.storage.put(keyHash, entry.getValue());
-                it.remove();
-            }
-        }
+    public void removeServer(int id, boolean forceRemove) {
+        beginRemoveServer(id, forceRemove).drain();
     }
 
-    public void removeServer(int id, boolean forceRemove) {
+    /**
+     * Takes the server off the ring right away and returns the migration that hands its ranges to the next servers.
+     * Force removing the last server drops its keys, there is nowhere to move them.
+     */
+    public Migration beginRemoveServer(int id, boolean forceRemove) {
         if(!serverIds.contains(id)){
             throw new IllegalArgumentException(String.format("Server with id {} not found", id));
         }
@@ -117,22 +772,112 @@ public class ConsistentHasher {
             throw new IllegalArgumentException("Atleast one server is needed in the ring. Still want to force remove use forceRemove arg!");
         }
 
-        BigInteger firstVirtualNodeHash = hash(virtualNodeId(id, 0));
-        Server s = hashRing.get(firstVirtualNodeHash);
-        hashRing.remove(firstVirtualNodeHash);
+        if(pending != null){
+            pending.drain();
+        }
 
-        for(int i = 1; i < virtualNodeCountPerServer; i++){
-            String vNodeId = virtualNodeId(id, i);
-            BigInteger h = hash(vNodeId);
-            hashRing.remove(h);
+        // keys spilled onto the leaving server are outside its ranges, take them out and place them again below
+        Map<BigInteger, String> spilledHere = new HashMap<>();
+        for(Iterator<Entry<BigInteger, Server>> it = spilled.entrySet().iterator(); it.hasNext(); ){
+            Entry<BigInteger, Server> e = it.next();
+            if(e.getValue().id == id){
+                spilledHere.put(e.getKey(), e.getValue().storage.remove(e.getKey()));
+                it.remove();
+            }
         }
 
-        for(Entry<BigInteger, String> e: s.storage.entrySet()){
-            BigInteger h = e.getKey();
-            Server nextServer = findNextServerPosition(h).getValue();
-            nextServer.storage.put(h, e.getValue());
+        // ranges are computed while the server is still on the ring
+        Server s = serverById(id);
+        Deque<Range> ranges = rangesOf(s, vNodeStorageTokens(id, 0, s.vNodeCount), false);
+        takeVNodes(s, 0, s.vNodeCount);
+        if(mode == RingMode.LONG_64){
+            slots[slotOf(id)] = null;
         }
         serverIds.remove(id);
+
+        for(Entry<BigInteger, String> e : spilledHere.entrySet()){
+            if(serverIds.isEmpty()) break;
+            Server owner = ownerOf(e.getKey());
+            Server target = loadEpsilon >= 0 ? firstUnderCapacity(e.getKey(), owner) : owner;
+            if(target != owner){
+                spilled.put(e.getKey(), target);
+            }
+            target.storage.put(e.getKey(), e.getValue());
+        }
+
+        return startMigration(ranges);
+    }
+
+    private Migration startMigration(Deque<Range> ranges){
+        Migration migration = new Migration(ranges);
+        pending = migration;
+        if(migration.isDone()){
+            migration.finish(); // nothing to stream, the change is complete already
+        }
+        return migration;
+    }
+
+    /**
+     * Writes the ring topology (not the stored keys) as a RingSnapshot. A BIG_INTEGER snapshot is the server table
+     * only, its vnodes are hashed again when it is loaded.
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        List<RingSnapshot.ServerEntry> entries = new ArrayList<>();
+        if(mode == RingMode.BIG_INTEGER){
+            int slot = 0;
+            for(Server s : servers()){
+                entries.add(new RingSnapshot.ServerEntry(slot++, s.id, s.name, s.weight, s.vNodeCount));
+            }
+            new RingSnapshot(virtualNodeCountPerServer, entries, TokenRing.EMPTY, RingMode.BIG_INTEGER).write(path);
+            return;
+        }
+
+
+        for(int slot = 0; slot < slots.length; slot++){
+            Server s = slots[slot];
+            if(s != null){
+                entries.add(new RingSnapshot.ServerEntry(slot, s.id, s.name, s.weight, s.vNodeCount));
+            }
+        }
+        new RingSnapshot(virtualNodeCountPerServer, entries, tokenRing).write(path);
+    }
+
+    /**
+     * Hasher in the snapshot's ring mode with its servers and ring (empty storage). A LONG_64 ring is copied as is,
+     * no vnode is hashed again.
+     */
+    public static ConsistentHasher fromSnapshot(Path path) throws IOException {
+        RingSnapshot snapshot = RingSnapshot.read(path);
+        ConsistentHasher hasher;
+        try {
+            hasher = new ConsistentHasher(snapshot.virtualNodeCountPerServer, snapshot.mode);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-1 is a required JDK algorithm
+        }
+
+        if(snapshot.mode == RingMode.BIG_INTEGER){
+            for(RingSnapshot.ServerEntry e : snapshot.servers){
+                Server s = new Server(e.name, e.id);
+                s.weight = e.weight;
+                s.vNodeCount = e.vNodeCount;
+                hasher.placeVNodes(s, 0, e.vNodeCount);
+                hasher.serverIds.add(e.id);
+            }
+            return hasher;
+        }
+
+        for(RingSnapshot.ServerEntry e : snapshot.servers){
+            if(e.slot >= hasher.slots.length){
+                hasher.slots = Arrays.copyOf(hasher.slots, Math.max(e.slot + 1, hasher.slots.length * 2));
+            }
+            Server s = new Server(e.name, e.id);
+            s.weight = e.weight;
+            s.vNodeCount = e.vNodeCount;
+            hasher.slots[e.slot] = s;
+            hasher.serverIds.add(e.id);
+        }
+        hasher.tokenRing = snapshot.ring;
+        return hasher;
     }
 
     private String virtualNodeId(int serverId, int vNodeId){
@@ -140,16 +885,26 @@ public class ConsistentHasher {
     }
 
     private void printValues(){
-        System.out.println("No Of virtual nodes - " + hashRing.size());
-        System.out.println("Hash Ring");
-        for (Entry<BigInteger, Server> entry : hashRing.entrySet()){
-            System.out.println(String.format("Virtual node %s belongs to %s", entry.getKey(), entry.getValue().name));
+        List<Server> ringOwners = new ArrayList<>();
+        if(mode == RingMode.LONG_64){
+            System.out.println("No Of virtual nodes - " + tokenRing.size());
+            System.out.println("Hash Ring");
+            for (int i = 0; i < tokenRing.size(); i++){
+                Server owner = slots[tokenRing.ownerAt(i)];
+                System.out.println(String.format("Virtual node %d belongs to %s", tokenRing.tokenAt(i), owner.name));
+                ringOwners.add(owner);
+            }
+        } else {
+            System.out.println("No Of virtual nodes - " + hashRing.size());
+            System.out.println("Hash Ring");
+            for (Entry<BigInteger, Server> entry : hashRing.entrySet()){
+                System.out.println(String.format("Virtual node %s belongs to %s", entry.getKey(), entry.getValue().name));
+                ringOwners.add(entry.getValue());
+            }
         }
 
         Set<Integer> printed = new HashSet<>();
-        for (Entry<BigInteger, Server> entry : hashRing.entrySet()) {
-            Server s = entry.getValue();
-            // System.out.println("Server " + s.id + " vnode -> " + entry.getKey());
+        for (Server s : ringOwners) {
             if (printed.contains(s.id)) continue; // avoid printing duplicates 
             printed.add(s.id);
             System.out.println(s.name + " stores keys:");
@@ -162,8 +917,8 @@ public class ConsistentHasher {
     }
 
      public static void main(String[] args) throws Exception {
-        // Create ConsistentHasher with 3 virtual nodes per server
-        ConsistentHasher hasher = new ConsistentHasher(200);
+        // Create ConsistentHasher with 200 virtual nodes per server on the primitive ring
+        ConsistentHasher hasher = new ConsistentHasher(200, RingMode.LONG_64);
 
         // Add servers
         hasher.addServer("Server0", 0);
@@ -180,6 +935,42 @@ public class ConsistentHasher {
         System.out.println("=== Storage after adding keys ===");
         hasher.printValues();
 
+        System.out.println("\n=== Preference lists (3 replicas) ===");
+        for (String key : keys) {
+            StringBuilder replicas = new StringBuilder();
+            for (Server s : hasher.getPreferenceList(key, 3)) {
+                replicas.append(s.name).append(' ');
+            }
+            System.out.println(key + " -> " + replicas.toString().trim());
+        }
+
+        // Bounded loads: with only 10 vnodes per server the plain ring is visibly skewed
+        ConsistentHasher plain = new ConsistentHasher(10, RingMode.LONG_64);
+        ConsistentHasher bounded = new ConsistentHasher(10, RingMode.LONG_64);
+        bounded.enableBoundedLoads(0.1);
+        for (int i = 0; i < 5; i++) {
+            plain.addServer("S" + i, i);
+            bounded.addServer("S" + i, i);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            plain.add("user_" + i, "v");
+            bounded.add("user_" + i, "v");
+        }
+        System.out.println("\n=== Load, plain ring ===\n" + plain.getLoadStats());
+        System.out.println("=== Load, bounded (epsilon 0.1) ===\n" + bounded.getLoadStats());
+
+        // Weighted servers: S2 has twice the capacity, then S0 is reweighted up
+        ConsistentHasher weighted = new ConsistentHasher(200, RingMode.LONG_64);
+        weighted.addServer("S0", 0, 1.0);
+        weighted.addServer("S1", 1, 1.0);
+        weighted.addServer("S2", 2, 2.0);
+        for (int i = 0; i < 100_000; i++) {
+            weighted.add("user_" + i, "v");
+        }
+        System.out.println("\n=== Weights 1/1/2 ===\n" + weighted.getLoadStats());
+        weighted.reweight(0, 2.0);
+        System.out.println("=== After reweight(S0, 2.0) ===\n" + weighted.getLoadStats());
+
         // Remove a key
         System.out.println("\nRemoving key 'cherry'");
         hasher.remove("cherry");
@@ -192,9 +983,14 @@ public class ConsistentHasher {
         System.out.println("\n=== Storage after adding Server3 ===");
         hasher.printValues();
 
-        // Remove a server
+        // Remove a server, streaming its keys in small batches
         System.out.println("\nRemoving Server2");
-        hasher.removeServer(2, true);
+        Migration migration = hasher.beginRemoveServer(2, true);
+        while (!migration.isDone()) {
+            int moved = migration.step(2);
+            System.out.println(String.format("  moved %d keys, ranges %d/%d, 'grape' still readable: %s",
+                moved, migration.getCompletedRanges(), migration.getTotalRanges(), hasher.get("grape")));
+        }
 
         // Print storage after removal
         System.out.println("\n=== Storage after removing Server2 ===");
@@ -202,7 +998,7 @@ public class ConsistentHasher {
     }
 }
 
-/** Replication not implemented
+/** Replication: getPreferenceList(key, n) returns the n distinct servers clockwise from the key (owner first)
  * If you want the nodes to look more “randomly scattered” (instead of clumped):
 
 Increase virtual nodes per server
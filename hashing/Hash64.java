@@ -0,0 +1,60 @@
+package hashing;
+
+/**
+ * Fast, stateless, non-cryptographic 64-bit hashing used by the primitive rings.
+ *
+ * hash() is MurmurHash64A run directly over the UTF-16 chars of the string (4 chars per
+ * 64-bit block), so no byte[] is created and no MessageDigest has to be shared.
+ * mix() is the SplitMix64 finalizer; it is a bijection, so mixing distinct inputs never collides.
+ */
+public final class Hash64 {
+    private static final long M = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+    private static final long DEFAULT_SEED = 0x9e3779b97f4a7c15L;
+
+    private Hash64() {
+    }
+
+    public static long hash(String key) {
+        return hash(key, DEFAULT_SEED);
+    }
+
+    public static long hash(String key, long seed) {
+        int len = key.length();
+        long h = seed ^ (len * 2L * M);
+
+        int i = 0;
+        for (; i + 4 <= len; i += 4) {
+            long k = key.charAt(i)
+                    | ((long) key.charAt(i + 1) << 16)
+                    | ((long) key.charAt(i + 2) << 32)
+                    | ((long) key.charAt(i + 3) << 48);
+            k *= M;
+            k ^= k >>> R;
+            k *= M;
+
+            h ^= k;
+            h *= M;
+        }
+
+        if (i < len) { // tail of 1-3 chars
+            long k = 0;
+            for (int shift = 0; i < len; i++, shift += 16) {
+                k |= (long) key.charAt(i) << shift;
+            }
+            h ^= k;
+            h *= M;
+        }
+
+        h ^= h >>> R;
+        h *= M;
+        h ^= h >>> R;
+        return h;
+    }
+
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
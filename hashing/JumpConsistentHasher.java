@@ -0,0 +1,70 @@
+package hashing;
+
+import java.util.Arrays;
+
+/**
+ * Jump consistent hash (Lamping & Veach): maps a key to one of n buckets in O(ln n) with no ring at all,
+ * the only state is the bucket -> server id array.
+ *
+ * Buckets are numbered 0..n-1, so servers can only be appended or dropped from the end without extra movement.
+ * Removing a server in the middle moves the last server into its bucket.
+ */
+public class JumpConsistentHasher implements KeyRouter {
+    private int[] bucketToServer = new int[0];
+
+    public static int jump(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    @Override
+    public void addServer(String name, int id) {
+        for (int serverId : bucketToServer) {
+            if (serverId == id) {
+                throw new IllegalArgumentException(String.format("Server with id %d already exist. Please provide unique server id", id));
+            }
+        }
+        bucketToServer = Arrays.copyOf(bucketToServer, bucketToServer.length + 1);
+        bucketToServer[bucketToServer.length - 1] = id;
+    }
+
+    /**
+     * Removing the last bucket only moves that server's keys. Removing any other bucket also moves
+     * the keys of the last bucket (~2/n of all keys instead of 1/n).
+     */
+    @Override
+    public void removeServer(int id) {
+        int last = bucketToServer.length - 1;
+        for (int bucket = 0; bucket <= last; bucket++) {
+            if (bucketToServer[bucket] == id) {
+                bucketToServer[bucket] = bucketToServer[last];
+                bucketToServer = Arrays.copyOf(bucketToServer, last);
+                return;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Server with id %d not found", id));
+    }
+
+    @Override
+    public int route(String key) {
+        if (bucketToServer.length == 0) {
+            throw new IllegalStateException("No servers available");
+        }
+        return bucketToServer[jump(Hash64.hash(key), bucketToServer.length)];
+    }
+}
+
+/*
+Pros:
+No memory besides the server list, perfectly even split, only 1/n of keys move when a bucket is appended.
+
+Cons:
+Buckets must stay sequential, so it fits sharded storage with append-only growth better than a fleet where any node can die.
+No weights, no replication walk.
+ */
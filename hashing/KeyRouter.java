@@ -0,0 +1,14 @@
+package hashing;
+
+/**
+ * Common shape of the key -> server routing engines in this package
+ * (vnode ring, rendezvous/HRW, jump hash, Maglev), so they can be swapped and compared.
+ */
+public interface KeyRouter {
+    void addServer(String name, int id);
+
+    void removeServer(int id);
+
+    /** Id of the server the key is routed to. */
+    int route(String key);
+}
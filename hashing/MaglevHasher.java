@@ -0,0 +1,111 @@
+package hashing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maglev hashing (Google's L4 load balancer): every server fills a fixed-size lookup table by walking its own
+ * permutation of the slots, taking turns, so each server gets ~M/n slots. A lookup is one hash and one array read.
+ *
+ * The table size M must be prime and much larger than the number of servers (M >= 100 * n keeps the
+ * imbalance under ~1%). The table is rebuilt on every membership change.
+ */
+public class MaglevHasher implements KeyRouter {
+    public static final int DEFAULT_TABLE_SIZE = 65537;
+
+    private final int tableSize;
+    private final List<Integer> serverIds = new ArrayList<>();
+    private int[] lookup = new int[0];
+
+    public MaglevHasher() {
+        this(DEFAULT_TABLE_SIZE);
+    }
+
+    public MaglevHasher(int tableSize) {
+        if (!isPrime(tableSize)) {
+            throw new IllegalArgumentException("Lookup table size must be prime");
+        }
+        this.tableSize = tableSize;
+    }
+
+    @Override
+    public void addServer(String name, int id) {
+        if (serverIds.contains(id)) {
+            throw new IllegalArgumentException(String.format("Server with id %d already exist. Please provide unique server id", id));
+        }
+        serverIds.add(id);
+        populate();
+    }
+
+    @Override
+    public void removeServer(int id) {
+        if (!serverIds.remove(Integer.valueOf(id))) {
+            throw new IllegalArgumentException(String.format("Server with id %d not found", id));
+        }
+        populate();
+    }
+
+    @Override
+    public int route(String key) {
+        if (lookup.length == 0) {
+            throw new IllegalStateException("No servers available");
+        }
+        return lookup[(int) Long.remainderUnsigned(Hash64.hash(key), tableSize)];
+    }
+
+    private void populate() {
+        int n = serverIds.size();
+        if (n == 0) {
+            lookup = new int[0];
+            return;
+        }
+
+        // permutation of server i: slot(j) = (offset + j * skip) mod M, skip in [1, M-1] so it visits every slot
+        long[] offset = new long[n];
+        long[] skip = new long[n];
+        long[] next = new long[n];
+        for (int i = 0; i < n; i++) {
+            long h = Hash64.mix(serverIds.get(i));
+            offset[i] = Long.remainderUnsigned(h, tableSize);
+            skip[i] = Long.remainderUnsigned(Hash64.mix(h), tableSize - 1) + 1;
+        }
+
+        int[] entry = new int[tableSize];
+        Arrays.fill(entry, -1);
+        int filled = 0;
+        while (true) {
+            for (int i = 0; i < n; i++) {
+                int slot = (int) ((offset[i] + next[i] * skip[i]) % tableSize);
+                while (entry[slot] >= 0) {
+                    next[i]++;
+                    slot = (int) ((offset[i] + next[i] * skip[i]) % tableSize);
+                }
+                entry[slot] = serverIds.get(i);
+                next[i]++;
+                if (++filled == tableSize) {
+                    lookup = entry;
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean isPrime(int n) {
+        if (n < 2) return false;
+        for (int d = 2; (long) d * d <= n; d++) {
+            if (n % d == 0) return false;
+        }
+        return true;
+    }
+}
+
+/*
+Pros:
+O(1) lookup, near perfect balance, the table is small (M ints) and cache friendly.
+Disruption on membership change is small: mostly the removed/added server's slots change hands.
+
+Cons:
+Not perfectly minimal, a few extra slots shift between surviving servers on each rebuild.
+Rebuild is O(M log M) in the worst case, fine for membership changes, not for per-request work.
+ */
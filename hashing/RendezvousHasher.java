@@ -1,85 +1,627 @@
 package hashing;
 
-import java.math.BigInteger;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-public class RendezvousHasher {
+public class RendezvousHasher implements KeyRouter {
     public static class Server {
         public String name;
         public int id;
         public Map<String, String> storage = new HashMap<>();
+        public double weight = 1.0; // share of the keys is weight / total weight
+        final long seed; // per-server salt for the FAST_64 score
 
         public Server(String name, int id) {
             this.name = name;
             this.id = id;
+            this.seed = Hash64.mix(id ^ 0x5bd1e9955bd1e995L);
         }
     }
 
+    /**
+     * Every mode ranks servers by the logarithmic weighted score -weight / ln(u), u being the key/server hash mapped
+     * to (0, 1). With equal weights that is just "highest hash wins".
+     *
+     * SHA1: original scoring, one SHA-1 of key + "#" + id per server (O(n) digests per key).
+     * FAST_64: one Hash64 of the key, mixed with each server's seed by an integer finalizer; O(n) multiplies, no allocation.
+     * SKELETON: hierarchical HRW over a virtual tree of the servers, O(fanout * log_fanout(n)) scores per key.
+     */
+    public enum ScoringMode {
+        SHA1,
+        FAST_64,
+        SKELETON
+    }
+
+    private static final int PARALLEL_BATCH_CHUNK = 1 << 10;
+    private static final int SKELETON_FANOUT = 8;
+
     private final List<Server> servers = new ArrayList<>();
     private final MessageDigest md;
     private final int replicationFactor; // number of servers per key
+    private final ScoringMode mode;
+    private final Skeleton skeleton;
+    // reused by selectReplicas so a lookup allocates nothing (not thread-safe, like the rest of the class)
+    private final double[] topScores;
+    private final Server[] replicaBuffer;
+    // where each stored key currently lives (best replica first), so remove/get touch only its R replicas
+    private final Map<String, Server[]> owners = new HashMap<>();
+    private Rebalance pending;
+    // all weights equal: ranking by the raw hash is the same as by logScore and skips a Math.log per server
+    private boolean uniformWeights = true;
+
+    /**
+     * Streams the keys whose replica set changed after a membership change, examining maxKeys candidates at a time
+     * (a join queues every stored key, so bounding the moves alone would not bound a step's work).
+     * Membership (and so routing) switches immediately, reads go through the owner index and therefore
+     * keep finding keys that have not been moved yet. add/remove during a rebalance stay correct: a key
+     * written meanwhile is already on its new replicas and is skipped when its turn comes.
+     */
+    public class Rebalance {
+        private final Deque<String> candidates;
+        private final Server gaining; // server whose score went up (join, weight increase), null: full recompute
+        private final int totalCandidates;
+        private long movedKeys;
+
+        private Rebalance(Deque<String> candidates, Server gaining) {
+            this.candidates = candidates;
+            this.gaining = gaining;
+            this.totalCandidates = candidates.size();
+        }
+
+        /** Examines up to maxKeys candidate keys, returns how many of them were moved. */
+        public int step(int maxKeys) {
+            int moved = 0;
+            for (int examined = 0; examined < maxKeys && !candidates.isEmpty(); examined++) {
+                String key = candidates.pollFirst();
+                Server[] current = owners.get(key);
+                if (current == null) {
+                    continue; // removed meanwhile
+                }
+                // flat HRW: only the gaining server's scores changed, it steals the key only if it now beats the
+                // weakest replica, an O(R) check
+                if (gaining != null && mode != ScoringMode.SKELETON && (contains(current, current.length, gaining)
+                        || current.length == Math.min(replicationFactor, servers.size()) && !beatsWeakest(key, gaining, current))) {
+                    continue;
+                }
+                if (relocate(key, current)) {
+                    moved++;
+                }
+            }
+
+            movedKeys += moved;
+            if (candidates.isEmpty() && pending == this) {
+                pending = null;
+            }
+            return moved;
+        }
+
+        public void drain() {
+            while (!isDone()) {
+                step(Integer.MAX_VALUE);
+            }
+        }
+
+        public boolean isDone() {
+            return candidates.isEmpty();
+        }
+
+        public long getMovedKeys() {
+            return movedKeys;
+        }
+
+        public int getCheckedKeys() {
+            return totalCandidates - candidates.size();
+        }
+
+        public int getTotalKeys() {
+            return totalCandidates;
+        }
+    }
 
     public RendezvousHasher(int replicationFactor) throws NoSuchAlgorithmException {
+        this(replicationFactor, ScoringMode.SHA1);
+    }
+
+    public RendezvousHasher(int replicationFactor, ScoringMode mode) throws NoSuchAlgorithmException {
         this.replicationFactor = replicationFactor;
-        md = MessageDigest.getInstance("SHA-1");
+        this.mode = mode;
+        md = mode == ScoringMode.SHA1 ? MessageDigest.getInstance("SHA-1") : null;
+        skeleton = mode == ScoringMode.SKELETON ? new Skeleton(SKELETON_FANOUT) : null;
+        topScores = new double[replicationFactor];
+        replicaBuffer = new Server[replicationFactor];
     }
 
-    private BigInteger hash(String key) {
-        byte[] digest = md.digest(key.getBytes());
-        return new BigInteger(1, digest);
+    /**
+     * Skeleton-based HRW: servers sit in stable leaf positions of a virtual tree with a fixed fanout. A lookup
+     * descends from the root, at each level picking the child with the best weighted HRW score (weight = total
+     * server weight under that child), so every server gets its weighted share and only keys heading into a changed
+     * subtree move. When the leaves are full the tree grows a new root above the old one (whose weight is all the
+     * servers), so growing moves no keys.
+     */
+    private static final class Skeleton {
+        private final int fanout;
+        private Server[] leaves;
+        private double[][] weights; // weights[level][node], level 0 = leaves, last level = root
+
+        Skeleton(int fanout) {
+            this.fanout = fanout;
+            this.leaves = new Server[fanout];
+            rebuildWeights();
+        }
+
+        void add(Server s) {
+            int position = indexOf(null);
+            if (position < 0) {
+                position = leaves.length;
+                leaves = Arrays.copyOf(leaves, leaves.length * fanout);
+                rebuildWeights();
+            }
+            leaves[position] = s;
+            updatePath(position);
+        }
+
+        void remove(Server s) {
+            int position = indexOf(s);
+            if (position >= 0) {
+                leaves[position] = null;
+                updatePath(position);
+            }
+        }
+
+        void reweight(Server s) {
+            int position = indexOf(s);
+            if (position >= 0) {
+                updatePath(position);
+            }
+        }
+
+        Server route(long keyHash) {
+            int node = 0;
+            for (int level = weights.length - 1; level > 0; level--) {
+                double[] childWeights = weights[level - 1];
+                int best = -1;
+                double bestScore = 0;
+                for (int c = node * fanout; c < node * fanout + fanout; c++) {
+                    if (childWeights[c] == 0) continue;
+                    double score = logScore(Hash64.mix(keyHash ^ Hash64.mix(((long) level << 40) ^ c)), childWeights[c]);
+                    if (best < 0 || score > bestScore) {
+                        best = c;
+                        bestScore = score;
+                    }
+                }
+                node = best;
+            }
+            return leaves[node];
+        }
+
+        private int indexOf(Server s) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i] == s) return i;
+            }
+            return -1;
+        }
+
+        // sums are recomputed from the children (not adjusted by +-w) so an emptied subtree is exactly 0
+        private void updatePath(int position) {
+            weights[0][position] = leaves[position] == null ? 0 : leaves[position].weight;
+            for (int level = 1, node = position / fanout; level < weights.length; level++, node /= fanout) {
+                double sum = 0;
+                for (int c = node * fanout; c < node * fanout + fanout; c++) {
+                    sum += weights[level - 1][c];
+                }
+                weights[level][node] = sum;
+            }
+        }
+
+        private void rebuildWeights() {
+            int levels = 1;
+            for (int width = leaves.length; width > 1; width /= fanout) {
+                levels++;
+            }
+            weights = new double[levels][];
+            for (int level = 0, width = leaves.length; level < levels; level++, width = Math.max(1, width / fanout)) {
+                weights[level] = new double[width];
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i] != null) updatePath(i);
+            }
+        }
+    }
+
+    // logarithmic weighted HRW: -w / ln(u) with u uniform in (0, 1) taken from the top 53 bits of the hash
+    static double logScore(long hash, double weight) {
+        double u = ((hash >>> 11) + 0.5) * 0x1.0p-53;
+        return -weight / Math.log(u);
     }
 
+    // top 64 bits of the SHA-1 digest, as a long for logScore
+    private static long digestPrefix(byte[] digest) {
+        long h = 0;
+        for (int i = 0; i < 8; i++) {
+            h = (h << 8) | (digest[i] & 0xff);
+        }
+        return h;
+    }
+
+    static double flatScore(long hash, double weight, boolean uniformWeights) {
+        return uniformWeights ? hash >>> 11 : logScore(hash, weight);
+    }
+
+    // flat (SHA1 / FAST_64) score of server s for the key, keyHash is Hash64.hash(key) and unused in SHA1 mode
+    private double score(String key, long keyHash, Server s) {
+        long hash = mode == ScoringMode.FAST_64 ? Hash64.mix(keyHash ^ s.seed) : digestPrefix(md.digest((key + "#" + s.id).getBytes()));
+        return flatScore(hash, s.weight, uniformWeights);
+    }
+
+    private void updateUniformWeights() {
+        uniformWeights = true;
+        for (Server s : servers) {
+            uniformWeights &= s.weight == servers.get(0).weight;
+        }
+    }
+
+    @Override
     public void addServer(String name, int id) {
+        beginAddServer(name, id).drain();
+    }
+
+    /** Server taking weight times the share of a weight 1.0 server. */
+    public void addServer(String name, int id, double weight) {
+        beginAddServer(name, id, weight).drain();
+    }
+
+    public Rebalance beginAddServer(String name, int id) {
+        return beginAddServer(name, id, 1.0);
+    }
+
+    /** Adds the server and returns the rebalance that copies it the keys it now ranks for. */
+    public Rebalance beginAddServer(String name, int id, double weight) {
+        checkWeight(weight);
         for (Server s : servers) {
             if (s.id == id) {
                 throw new IllegalArgumentException("Server ID already exists");
             }
         }
-        servers.add(new Server(name, id));
+        if (pending != null) {
+            pending.drain();
+        }
+
+        Server s = new Server(name, id);
+        s.weight = weight;
+        servers.add(s);
+        updateUniformWeights();
+        if (skeleton != null) {
+            skeleton.add(s);
+        }
+        return pending = new Rebalance(new ArrayDeque<>(owners.keySet()), s);
     }
 
+    @Override
     public void removeServer(int id) {
-        servers.removeIf(s -> s.id == id);
+        beginRemoveServer(id).drain();
+    }
+
+    /**
+     * Removes the server from routing right away, its keys (and, in the flat modes, only those) are re-replicated
+     * by the returned rebalance. Until a key is moved it is still served from the leaving server's storage.
+     */
+    public Rebalance beginRemoveServer(int id) {
+        Server leaving = serverById(id);
+        if (pending != null) {
+            pending.drain();
+        }
+
+        servers.remove(leaving);
+        updateUniformWeights();
+        if (skeleton != null) {
+            skeleton.remove(leaving);
+        }
+        // in SKELETON mode the subtree weights on the leaving server's path change too, so every key is rechecked
+        Set<String> affected = mode == ScoringMode.SKELETON ? owners.keySet() : leaving.storage.keySet();
+        return pending = new Rebalance(new ArrayDeque<>(affected), null);
+    }
+
+    public void reweight(int id, double newWeight) {
+        beginReweight(id, newWeight).drain();
+    }
+
+    /**
+     * Changes the server's weight. Only the server's own scores change, so a heavier server can only gain keys
+     * (checked like a join) and a lighter one can only lose its own keys (rechecked like a leave).
+     */
+    public Rebalance beginReweight(int id, double newWeight) {
+        checkWeight(newWeight);
+        Server s = serverById(id);
+        if (pending != null) {
+            pending.drain();
+        }
+
+        double oldWeight = s.weight;
+        s.weight = newWeight;
+        updateUniformWeights();
+        if (skeleton != null) {
+            skeleton.reweight(s);
+            return pending = new Rebalance(new ArrayDeque<>(owners.keySet()), null);
+        }
+        if (newWeight > oldWeight) {
+            return pending = new Rebalance(new ArrayDeque<>(owners.keySet()), s);
+        }
+        return pending = new Rebalance(new ArrayDeque<>(s.storage.keySet()), null);
     }
 
-    private List<Server> getReplicas(String key) {
-        PriorityQueue<Map.Entry<Server, BigInteger>> pq = new PriorityQueue<>(
-                Comparator.comparing(Map.Entry<Server, BigInteger>::getValue).reversed()
-        );
+    private static void checkWeight(double weight) {
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Server weight must be positive");
+        }
+    }
 
+    private Server serverById(int id) {
         for (Server s : servers) {
-            BigInteger score = hash(key + "#" + s.id);
-            pq.add(new AbstractMap.SimpleEntry<>(s, score));
+            if (s.id == id) {
+                return s;
+            }
         }
+        throw new IllegalArgumentException(String.format("Server with id %d not found", id));
+    }
 
-        List<Server> result = new ArrayList<>();
-        Set<Integer> added = new HashSet<>();
-        while (!pq.isEmpty() && result.size() < replicationFactor) {
-            Server s = pq.poll().getKey();
-            if (!added.contains(s.id)) {
-                result.add(s);
-                added.add(s.id);
+    // moves the key from its current replicas to its computed ones, returns false if they already match
+    private boolean relocate(String key, Server[] current) {
+        int count = selectReplicas(key, replicaBuffer);
+        if (sameServers(current, replicaBuffer, count)) {
+            return false;
+        }
+
+        String value = current[0].storage.get(key);
+        Server[] target = Arrays.copyOf(replicaBuffer, count);
+        for (Server s : target) {
+            s.storage.put(key, value);
+        }
+        for (Server s : current) {
+            if (!contains(target, count, s)) {
+                s.storage.remove(key);
             }
         }
+        owners.put(key, target);
+        return true;
+    }
+
+    private static boolean sameServers(Server[] current, Server[] target, int count) {
+        if (current.length != count) {
+            return false;
+        }
+        for (Server s : current) {
+            if (!contains(target, count, s)) return false;
+        }
+        return true;
+    }
+
+    // whether the candidate scores above the lowest scoring of the key's current replicas (flat modes)
+    private boolean beatsWeakest(String key, Server candidate, Server[] current) {
+        long keyHash = mode == ScoringMode.FAST_64 ? Hash64.hash(key) : 0;
+        double weakest = Double.POSITIVE_INFINITY;
+        for (Server s : current) {
+            weakest = Math.min(weakest, score(key, keyHash, s));
+        }
+        return score(key, keyHash, candidate) > weakest;
+    }
+
+    /** Highest scoring server, i.e. the first replica, without building the whole ranking. */
+    @Override
+    public int route(String key) {
+        if (servers.isEmpty()) {
+            throw new IllegalStateException("No servers available");
+        }
+        if (mode == ScoringMode.SKELETON) {
+            return skeleton.route(Hash64.hash(key)).id;
+        }
+
+        long keyHash = mode == ScoringMode.FAST_64 ? Hash64.hash(key) : 0;
+        Server best = null;
+        double bestScore = 0;
+        for (int i = 0; i < servers.size(); i++) {
+            Server s = servers.get(i);
+            double score = score(key, keyHash, s);
+            if (best == null || score > bestScore) {
+                best = s;
+                bestScore = score;
+            }
+        }
+        return best.id;
+    }
+
+    /**
+     * Fills out with the top replicationFactor servers for the key (best first) and returns how many were filled.
+     * The top-R is kept in a fixed-size array by insertion, so FAST_64 and SKELETON lookups allocate nothing.
+     */
+    public int selectReplicas(String key, Server[] out) {
+        int count = Math.min(Math.min(replicationFactor, out.length), servers.size());
+        if (count == 0) {
+            return 0;
+        }
+
+        if (mode == ScoringMode.SKELETON) {
+            // independent descents with re-seeded key hashes until enough distinct servers are found
+            long keyHash = Hash64.hash(key);
+            int filled = 0;
+            for (int attempt = 0; filled < count && attempt < 8 * count; attempt++) {
+                Server s = skeleton.route(attempt == 0 ? keyHash : Hash64.mix(keyHash + attempt));
+                if (!contains(out, filled, s)) out[filled++] = s;
+            }
+            for (int i = 0; filled < count; i++) { // practically unreachable, keeps the result deterministic
+                if (!contains(out, filled, servers.get(i))) out[filled++] = servers.get(i);
+            }
+            return count;
+        }
+
+        long keyHash = mode == ScoringMode.FAST_64 ? Hash64.hash(key) : 0;
+        int filled = 0;
+        for (int i = 0; i < servers.size(); i++) {
+            Server s = servers.get(i);
+            double score = score(key, keyHash, s);
+            if (filled == count && score <= topScores[count - 1]) continue;
+
+            int pos = filled < count ? filled++ : count - 1;
+            while (pos > 0 && topScores[pos - 1] < score) {
+                topScores[pos] = topScores[pos - 1];
+                out[pos] = out[pos - 1];
+                pos--;
+            }
+            topScores[pos] = score;
+            out[pos] = s;
+        }
+        return count;
+    }
+
+    private static boolean contains(Server[] servers, int length, Server s) {
+        for (int i = 0; i < length; i++) {
+            if (servers[i] == s) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Top server id for every key, the same answer as route(key). In SHA1 mode each key is encoded once and the
+     * per-server "#id" suffixes are encoded once per batch.
+     */
+    public int[] routeBatch(String[] keys) {
+        if (servers.isEmpty()) {
+            throw new IllegalStateException("No servers available");
+        }
+
+        int[] result = new int[keys.length];
+        routeChunk(keys, 0, keys.length, result);
         return result;
     }
 
+    private void routeChunk(String[] keys, int from, int to, int[] result) {
+        if (mode == ScoringMode.SHA1) {
+            new BatchScorer(servers, uniformWeights).route(keys, from, to, result);
+            return;
+        }
+        for (int k = from; k < to; k++) {
+            result[k] = route(keys[k]); // the fast modes are already allocation free per key
+        }
+    }
+
+    /**
+     * Same as routeBatch(keys), large batches are split into chunks scored on the pool, each with its own digest.
+     * Like every method of this class it must not run concurrently with a membership change.
+     */
+    public int[] routeBatch(String[] keys, ForkJoinPool pool) {
+        if (keys.length <= PARALLEL_BATCH_CHUNK) {
+            return routeBatch(keys);
+        }
+        if (servers.isEmpty()) {
+            throw new IllegalStateException("No servers available");
+        }
+
+        int[] result = new int[keys.length];
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<RecursiveAction> chunks = new ArrayList<>();
+                for (int from = 0; from < keys.length; from += PARALLEL_BATCH_CHUNK) {
+                    int start = from;
+                    int end = Math.min(keys.length, from + PARALLEL_BATCH_CHUNK);
+                    chunks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            routeChunk(keys, start, end, result);
+                        }
+                    });
+                }
+                invokeAll(chunks);
+            }
+        });
+        return result;
+    }
+
+    private static class BatchScorer {
+        private final MessageDigest md;
+        private final int[] ids;
+        private final double[] weights;
+        private final byte[][] suffixes;
+        private final byte[] candidate = new byte[20];
+        private final boolean uniformWeights;
+
+        BatchScorer(List<Server> servers, boolean uniformWeights) {
+            this.uniformWeights = uniformWeights;
+            try {
+                md = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            ids = new int[servers.size()];
+            weights = new double[servers.size()];
+            suffixes = new byte[servers.size()][];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = servers.get(i).id;
+                weights[i] = servers.get(i).weight;
+                suffixes[i] = ("#" + ids[i]).getBytes();
+            }
+        }
+
+        void route(String[] keys, int from, int to, int[] result) {
+            try {
+                for (int k = from; k < to; k++) {
+                    byte[] keyBytes = keys[k].getBytes();
+                    int bestId = -1;
+                    double bestScore = 0;
+                    for (int i = 0; i < ids.length; i++) {
+                        md.update(keyBytes);
+                        md.update(suffixes[i]);
+                        md.digest(candidate, 0, candidate.length);
+                        double score = flatScore(digestPrefix(candidate), weights[i], uniformWeights);
+                        if (bestId == -1 || score > bestScore) {
+                            bestScore = score;
+                            bestId = ids[i];
+                        }
+                    }
+                    result[k] = bestId;
+                }
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
     public void add(String key, String value) {
         if (servers.isEmpty()) {
             throw new IllegalStateException("No servers available");
         }
 
-        List<Server> replicas = getReplicas(key);
-        for (Server s : replicas) {
+        int count = selectReplicas(key, replicaBuffer);
+        Server[] target = Arrays.copyOf(replicaBuffer, count);
+        for (Server s : target) {
             s.storage.put(key, value);
         }
+        // during a rebalance the key may still sit on replicas it no longer belongs to
+        Server[] previous = owners.put(key, target);
+        if (previous != null) {
+            for (Server s : previous) {
+                if (!contains(target, count, s)) {
+                    s.storage.remove(key);
+                }
+            }
+        }
     }
 
+    public String get(String key) {
+        Server[] current = owners.get(key);
+        return current == null ? null : current[0].storage.get(key);
+    }
+
+    /** Touches only the key's replicas, found through the owner index. */
     public void remove(String key) {
-        for (Server s : servers) {
-            s.storage.remove(key);
+        Server[] current = owners.remove(key);
+        if (current != null) {
+            for (Server s : current) {
+                s.storage.remove(key);
+            }
         }
     }
 
@@ -113,9 +655,58 @@ public class RendezvousHasher {
         rh.remove("cherry");
 
         System.out.println("\nAdding Server3");
-        rh.addServer("Server3", 3);
+        Rebalance rebalance = rh.beginAddServer("Server3", 3);
+        while (!rebalance.isDone()) {
+            int moved = rebalance.step(2);
+            System.out.printf("  moved %d keys (%d/%d checked)%n", moved, rebalance.getCheckedKeys(), rebalance.getTotalKeys());
+        }
 
         System.out.println("\n=== Storage after adding Server3 ===");
         rh.printValues();
+
+        System.out.println("\nRemoving Server0");
+        rh.removeServer(0);
+        for (String key : keys) {
+            if (!key.equals("cherry") && rh.get(key) == null) {
+                System.out.println("  lost " + key);
+            }
+        }
+        System.out.println("\n=== Storage after removing Server0 ===");
+        rh.printValues();
+
+        // Weighted: S2 has twice the capacity, then S0 is reweighted up
+        RendezvousHasher weighted = new RendezvousHasher(1, ScoringMode.FAST_64);
+        weighted.addServer("S0", 0, 1.0);
+        weighted.addServer("S1", 1, 1.0);
+        weighted.addServer("S2", 2, 2.0);
+        for (int i = 0; i < 10000; i++) {
+            weighted.add("user_" + i, "v");
+        }
+        System.out.println("\n=== Weights 1/1/2 ===");
+        weighted.servers.forEach(s -> System.out.println("  " + s.name + ": " + s.storage.size() + " keys"));
+        Rebalance reweight = weighted.beginReweight(0, 2.0);
+        reweight.drain();
+        System.out.println("=== After reweight(S0, 2.0), moved " + reweight.getMovedKeys() + " keys ===");
+        weighted.servers.forEach(s -> System.out.println("  " + s.name + ": " + s.storage.size() + " keys"));
     }
 }
+
+/*
+Scoring modes:
+SHA1 is the original, one digest per server per key. FAST_64 keeps the same O(n) scan but scores with a couple of
+multiplies, which is enough for a few hundred servers. SKELETON only scores fanout children per tree level, so a lookup
+costs O(fanout * log_fanout(n)) whatever n is.
+
+Cons of SKELETON: keys that enter a changed subtree are spread over all of its leaves, so a join or leave remaps
+somewhat more than the ideal 1/n (see RouterComparison). Removed servers leave a hole that the next join fills.
+
+Weights:
+The -w / ln(u) score gives each server exactly weight / total weight of the keys in expectation, and since a
+weight only changes that server's own scores, a reweight moves only keys to it (heavier) or off it (lighter).
+While all weights are equal the raw hashes are compared instead, saving a Math.log per server.
+
+Rebalancing:
+With flat scores a key's ranking of the other servers never changes, so a join only has to look at whether the
+newcomer beats each key's weakest replica (R score comparisons, no full ranking), and a leave only touches the
+leaving server's keys. The owner index costs one small array per key, in exchange remove/get never scan servers.
+ */
@@ -0,0 +1,186 @@
+package hashing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact binary image of a primitive ring, so router processes can start from a file instead of re-hashing
+ * every vnode, and every process loading the same file sees exactly the same topology.
+ *
+ * Layout (big endian):
+ *   int magic, int version, int virtualNodeCountPerServer, int serverCount
+ *   per server: int slot, int id, double weight, int vNodeCount, int nameLength, UTF-8 name bytes
+ *   padding to 8 bytes, int tokenCount, int ringMode (0 = LONG_64, 1 = BIG_INTEGER)
+ *   long[tokenCount] sorted tokens, int[tokenCount] owner slots
+ *
+ * Loading maps the file read-only and bulk copies the two arrays, no hashing and no per-token objects.
+ * BIG_INTEGER rings store the server table only (tokenCount 0): their 160-bit SHA-1 tokens do not fit the long[]
+ * layout, and they are a pure function of (server id, vnode id), so loading hashes the vnodes again and still gets
+ * exactly the same ring.
+ */
+public final class RingSnapshot {
+    private static final int MAGIC = 0x52494e47; // "RING"
+    private static final int VERSION = 1;
+
+    public static final class ServerEntry {
+        public final int slot;
+        public final int id;
+        public final String name;
+        public final double weight;
+        public final int vNodeCount;
+
+        public ServerEntry(int slot, int id, String name, double weight, int vNodeCount) {
+            this.slot = slot;
+            this.id = id;
+            this.name = name;
+            this.weight = weight;
+            this.vNodeCount = vNodeCount;
+        }
+    }
+
+    public final int virtualNodeCountPerServer;
+    public final List<ServerEntry> servers;
+    public final TokenRing ring;   // empty for BIG_INTEGER
+    public final ConsistentHasher.RingMode mode;
+
+    public RingSnapshot(int virtualNodeCountPerServer, List<ServerEntry> servers, TokenRing ring) {
+        this(virtualNodeCountPerServer, servers, ring, ConsistentHasher.RingMode.LONG_64);
+    }
+
+    public RingSnapshot(int virtualNodeCountPerServer, List<ServerEntry> servers, TokenRing ring, ConsistentHasher.RingMode mode) {
+        if (mode == ConsistentHasher.RingMode.BIG_INTEGER && ring.size() > 0) {
+            throw new IllegalArgumentException("A BIG_INTEGER snapshot holds no primitive tokens");
+        }
+        this.virtualNodeCountPerServer = virtualNodeCountPerServer;
+        this.servers = Collections.unmodifiableList(new ArrayList<>(servers));
+        this.ring = ring;
+        this.mode = mode;
+    }
+
+    public void write(Path path) throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        int headerSize = 16;
+        for (ServerEntry s : servers) {
+            byte[] name = s.name.getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            headerSize += 24 + name.length;
+        }
+        headerSize = (headerSize + 7) & ~7;
+
+        int n = ring.size();
+        ByteBuffer buf = ByteBuffer.allocate(headerSize + 8 + n * 12);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(virtualNodeCountPerServer).putInt(servers.size());
+        for (int i = 0; i < servers.size(); i++) {
+            ServerEntry s = servers.get(i);
+            buf.putInt(s.slot).putInt(s.id).putDouble(s.weight).putInt(s.vNodeCount).putInt(names.get(i).length).put(names.get(i));
+        }
+        buf.position(headerSize);
+        buf.putInt(n).putInt(mode == ConsistentHasher.RingMode.BIG_INTEGER ? 1 : 0);
+        for (int i = 0; i < n; i++) {
+            buf.putLong(ring.tokenAt(i));
+        }
+        for (int i = 0; i < n; i++) {
+            buf.putInt(ring.ownerAt(i));
+        }
+        buf.flip();
+
+        // write to a sibling file and rename, so a reader never maps a half written snapshot
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static RingSnapshot read(Path path) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+
+        if (buf.remaining() < 16 || buf.getInt() != MAGIC) {
+            throw new IOException("Not a ring snapshot: " + path);
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported ring snapshot version " + version);
+        }
+
+        int virtualNodeCountPerServer = buf.getInt();
+        int serverCount = buf.getInt();
+        List<ServerEntry> servers = new ArrayList<>(serverCount);
+        int maxSlot = -1;
+        for (int i = 0; i < serverCount; i++) {
+            int slot = buf.getInt();
+            int id = buf.getInt();
+            double weight = buf.getDouble();
+            int vNodeCount = buf.getInt();
+            byte[] name = new byte[buf.getInt()];
+            buf.get(name);
+            servers.add(new ServerEntry(slot, id, new String(name, StandardCharsets.UTF_8), weight, vNodeCount));
+            maxSlot = Math.max(maxSlot, slot);
+        }
+        buf.position((buf.position() + 7) & ~7);
+
+        int n = buf.getInt();
+        int ringMode = buf.getInt();
+        if (ringMode != 0 && ringMode != 1) {
+            throw new IOException("Unknown ring mode " + ringMode + " in snapshot " + path);
+        }
+        ConsistentHasher.RingMode mode = ringMode == 1 ? ConsistentHasher.RingMode.BIG_INTEGER : ConsistentHasher.RingMode.LONG_64;
+        if (mode == ConsistentHasher.RingMode.BIG_INTEGER && n != 0) {
+            throw new IOException("Corrupted ring snapshot: BIG_INTEGER snapshot with tokens");
+        }
+        long[] tokens = new long[n];
+        int[] owners = new int[n];
+        buf.asLongBuffer().get(tokens);
+        buf.position(buf.position() + n * 8);
+        buf.asIntBuffer().get(owners);
+
+        boolean[] known = new boolean[maxSlot + 1];
+        for (ServerEntry s : servers) {
+            known[s.slot] = true;
+        }
+        for (int i = 0; i < n; i++) {
+            if (owners[i] < 0 || owners[i] > maxSlot || !known[owners[i]] || (i > 0 && tokens[i - 1] > tokens[i])) {
+                throw new IOException("Corrupted ring snapshot at token " + i);
+            }
+        }
+        return new RingSnapshot(virtualNodeCountPerServer, servers, new TokenRing(tokens, owners), mode);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int servers = 500;
+        long start = System.nanoTime();
+        ConsistentHasher hasher = new ConsistentHasher(200, ConsistentHasher.RingMode.LONG_64);
+        for (int i = 0; i < servers; i++) {
+            hasher.addServer("Server" + i, i);
+        }
+        System.out.printf("Built ring of %d servers from scratch in %d ms%n", servers, (System.nanoTime() - start) / 1_000_000);
+
+        Path file = Files.createTempFile("ring", ".snapshot");
+        hasher.writeSnapshot(file);
+        System.out.printf("Snapshot size %d KB%n", Files.size(file) / 1024);
+
+        for (int run = 0; run < 3; run++) {
+            start = System.nanoTime();
+            ConcurrentConsistentHasher router = ConcurrentConsistentHasher.fromSnapshot(file);
+            long loadMicros = (System.nanoTime() - start) / 1000;
+            System.out.printf("Router warm start from snapshot in %d us, 'apple' -> %d (builder says %d)%n",
+                loadMicros, router.route("apple"), hasher.route("apple"));
+        }
+        Files.delete(file);
+    }
+}
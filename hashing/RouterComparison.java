@@ -0,0 +1,222 @@
+package hashing;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Side by side comparison of the KeyRouter engines:
+ * lookup latency, retained heap of the routing structure, and the fraction of keys remapped
+ * when a server joins and when one leaves (ideal is 1/(n+1) and 1/n).
+ *
+ * Numbers are indicative only (System.nanoTime loops, heap deltas after System.gc()).
+ */
+public class RouterComparison {
+    private static final int SERVERS = 50;
+    private static final int KEYS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Supplier<KeyRouter>> engines = new LinkedHashMap<>();
+        engines.put("Ring (LONG_64, 160 vnodes)", () -> {
+            try {
+                return new ConsistentHasher(160, ConsistentHasher.RingMode.LONG_64);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        engines.put("Rendezvous (HRW)", () -> {
+            try {
+                return new RendezvousHasher(1);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        engines.put("Rendezvous (FAST_64)", () -> {
+            try {
+                return new RendezvousHasher(1, RendezvousHasher.ScoringMode.FAST_64);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        engines.put("Rendezvous (SKELETON)", () -> {
+            try {
+                return new RendezvousHasher(1, RendezvousHasher.ScoringMode.SKELETON);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        engines.put("Jump", JumpConsistentHasher::new);
+        engines.put("Maglev (M=65537)", MaglevHasher::new);
+
+        String[] keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "key_" + i;
+        }
+
+        System.out.printf("%d servers, %d keys, ideal remap on join %.2f%%, on leave %.2f%%%n%n",
+            SERVERS, KEYS, 100.0 / (SERVERS + 1), 100.0 / SERVERS);
+        System.out.printf("%-28s %12s %14s %12s %12s%n", "engine", "ns/lookup", "memory (KB)", "join remap", "leave remap");
+        for (Map.Entry<String, Supplier<KeyRouter>> e : engines.entrySet()) {
+            long before = usedHeap();
+            KeyRouter router = e.getValue().get();
+            for (int i = 0; i < SERVERS; i++) {
+                router.addServer("Server" + i, i);
+            }
+            long memory = usedHeap() - before;
+
+            int[] baseline = routeAll(router, keys);
+            for (int warmup = 0; warmup < 3; warmup++) {
+                routeAll(router, keys);
+            }
+            long start = System.nanoTime();
+            routeAll(router, keys);
+            double nsPerLookup = (double) (System.nanoTime() - start) / KEYS;
+
+            router.addServer("ServerNew", SERVERS);
+            double joinRemap = remapped(baseline, routeAll(router, keys));
+            router.removeServer(SERVERS);
+
+            // leave a server from the middle, jump hash pays for not removing the last bucket here
+            router.removeServer(SERVERS / 2);
+            double leaveRemap = remapped(baseline, routeAll(router, keys));
+
+            System.out.printf("%-28s %12.1f %14d %11.2f%% %11.2f%%%n",
+                e.getKey(), nsPerLookup, Math.max(0, memory / 1024), joinRemap * 100, leaveRemap * 100);
+        }
+
+        compareBatchRouting(keys);
+        compareWeightedDistribution();
+    }
+
+    /**
+     * How closely each weighted engine hands out its servers' fair shares (keys * weight / total weight) over 1M
+     * keys. Reports the worst server's load relative to its fair share, 1.00 is perfect. SHA1 HRW is left out,
+     * it ranks exactly like FAST_64 statistically and would take 50M digests.
+     */
+    private static void compareWeightedDistribution() throws Exception {
+        int keyCount = 1_000_000;
+        Map<String, double[]> mixes = new LinkedHashMap<>();
+        double[] uniform = new double[SERVERS];
+        double[] twoTiers = new double[SERVERS];
+        double[] linear = new double[SERVERS];
+        double[] oneHeavy = new double[SERVERS];
+        for (int i = 0; i < SERVERS; i++) {
+            uniform[i] = 1;
+            twoTiers[i] = i % 2 == 0 ? 1 : 2;
+            linear[i] = 1 + i % 10;
+            oneHeavy[i] = i == 0 ? 10 : 1;
+        }
+        mixes.put("uniform", uniform);
+        mixes.put("two tiers 1:2", twoTiers);
+        mixes.put("linear 1..10", linear);
+        mixes.put("one server 10x", oneHeavy);
+        String[] engines = {"Ring (LONG_64, 160 vnodes)", "Rendezvous (FAST_64)", "Rendezvous (SKELETON)"};
+
+        System.out.printf("%n%-28s", "max load / fair share");
+        for (String mix : mixes.keySet()) {
+            System.out.printf(" %15s", mix);
+        }
+        System.out.println();
+        for (String engine : engines) {
+            System.out.printf("%-28s", engine);
+            for (double[] weights : mixes.values()) {
+                KeyRouter router = weightedRouter(engine, weights);
+                int[] load = new int[SERVERS];
+                for (int i = 0; i < keyCount; i++) {
+                    load[router.route("key_" + i)]++;
+                }
+
+                double totalWeight = Arrays.stream(weights).sum();
+                double worst = 0;
+                for (int i = 0; i < SERVERS; i++) {
+                    worst = Math.max(worst, load[i] / (keyCount * weights[i] / totalWeight));
+                }
+                System.out.printf(" %15.3f", worst);
+            }
+            System.out.println();
+        }
+    }
+
+    private static KeyRouter weightedRouter(String engine, double[] weights) throws Exception {
+        if (engine.startsWith("Ring")) {
+            ConsistentHasher ring = new ConsistentHasher(160, ConsistentHasher.RingMode.LONG_64);
+            for (int i = 0; i < weights.length; i++) {
+                ring.addServer("Server" + i, i, weights[i]);
+            }
+            return ring;
+        }
+        RendezvousHasher hrw = new RendezvousHasher(1, engine.contains("SKELETON")
+            ? RendezvousHasher.ScoringMode.SKELETON : RendezvousHasher.ScoringMode.FAST_64);
+        for (int i = 0; i < weights.length; i++) {
+            hrw.addServer("Server" + i, i, weights[i]);
+        }
+        return hrw;
+    }
+
+    /**
+     * route() one key at a time against routeBatch. The batch hashes a block of keys and then resolves their ring
+     * lookups together, which only helps once the ring no longer fits the CPU caches, hence the two ring sizes.
+     */
+    private static void compareBatchRouting(String[] keys) throws Exception {
+        String[] batchKeys = new String[1_000_000];
+        for (int i = 0; i < batchKeys.length; i++) {
+            batchKeys[i] = keys[i % keys.length] + "#" + i;
+        }
+        RendezvousHasher hrw = new RendezvousHasher(1);
+        for (int i = 0; i < SERVERS; i++) {
+            hrw.addServer("Server" + i, i);
+        }
+        String[] hrwKeys = Arrays.copyOf(keys, keys.length / 10);
+
+        System.out.printf("%n%-28s %16s %16s %16s%n", "batch routing (keys/sec)", "route() loop", "routeBatch", "routeBatch+FJP");
+        for (int servers : new int[] {SERVERS, 20 * SERVERS}) {
+            ConsistentHasher ring = new ConsistentHasher(160, ConsistentHasher.RingMode.LONG_64);
+            for (int i = 0; i < servers; i++) {
+                ring.addServer("Server" + i, i);
+            }
+            for (int run = 0; run < 5; run++) {
+                boolean last = run == 4;
+                double single = keysPerSecond(batchKeys, () -> routeAll(ring, batchKeys));
+                double batch = keysPerSecond(batchKeys, () -> ring.routeBatch(batchKeys));
+                double parallel = keysPerSecond(batchKeys, () -> ring.routeBatch(batchKeys, ForkJoinPool.commonPool()));
+                if (last) System.out.printf("%-28s %,16.0f %,16.0f %,16.0f%n", "Ring (LONG_64, " + servers + " servers)", single, batch, parallel);
+            }
+        }
+        double single = keysPerSecond(hrwKeys, () -> routeAll(hrw, hrwKeys));
+        double batch = keysPerSecond(hrwKeys, () -> hrw.routeBatch(hrwKeys));
+        double parallel = keysPerSecond(hrwKeys, () -> hrw.routeBatch(hrwKeys, ForkJoinPool.commonPool()));
+        System.out.printf("%-28s %,16.0f %,16.0f %,16.0f%n", "Rendezvous (HRW)", single, batch, parallel);
+    }
+
+    private static double keysPerSecond(String[] keys, Runnable routing) {
+        long start = System.nanoTime();
+        routing.run();
+        return keys.length / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static int[] routeAll(KeyRouter router, String[] keys) {
+        int[] result = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = router.route(keys[i]);
+        }
+        return result;
+    }
+
+    private static double remapped(int[] before, int[] after) {
+        int moved = 0;
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != after[i]) moved++;
+        }
+        return (double) moved / before.length;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
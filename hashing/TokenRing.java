@@ -0,0 +1,229 @@
+package hashing;
+
+import java.util.Arrays;
+
+/**
+ * Immutable consistent hashing ring kept as two parallel primitive arrays.
+ *
+ * tokens[] is sorted (signed long order, the ring wraps from the last token to the first) and
+ * owners[i] is the slot of the server that owns tokens[i]. A lookup reads a bucket index over the top bits of the
+ * hash (about two buckets per token) and scans the one or two tokens of that bucket, no binary search and no
+ * allocation. Membership changes never touch an existing ring, they build a new one.
+ */
+public final class TokenRing {
+    public static final TokenRing EMPTY = new TokenRing(new long[0], new int[0]);
+
+    /**
+     * Token of a server's vNodeId-th virtual node, a bijective mix of (serverId, vNodeId) so two vnodes never collide.
+     * Every LONG_64 ring takes its tokens from here, so a server lands on the same positions in all of them.
+     */
+    static long vNodeToken(int serverId, int vNodeId) {
+        return Hash64.mix(((long) serverId << 32) | (vNodeId & 0xffffffffL));
+    }
+
+    /**
+     * Per-token successor table: row i holds the first `width` distinct owners met walking clockwise from token i,
+     * so an N-replica preference list is a single ring lookup plus reading one row.
+     */
+    public static final class Successors {
+        public final int width;
+        private final int[] table;
+        private final boolean allOwners; // width already covers every distinct owner
+
+        Successors(int width, int[] table, boolean allOwners) {
+            this.width = width;
+            this.table = table;
+            this.allOwners = allOwners;
+        }
+
+        public int ownerAt(int tokenIndex, int rank) {
+            return table[tokenIndex * width + rank];
+        }
+    }
+
+    private final long[] tokens;
+    private final int[] owners;
+    private volatile Successors successors; // built lazily, the ring itself never changes
+    private volatile int[] buckets;         // buckets[b] = first token index in bucket b or later, built lazily
+    private int bucketShift;                // published by the volatile write of buckets
+
+    TokenRing(long[] tokens, int[] owners) {
+        this.tokens = tokens;
+        this.owners = owners;
+    }
+
+    public int size() {
+        return tokens.length;
+    }
+
+    public long tokenAt(int index) {
+        return tokens[index];
+    }
+
+    public int ownerAt(int index) {
+        return owners[index];
+    }
+
+    /** Index of the first token >= hash, wrapping around to 0 past the last token. */
+    public int ceilingIndex(long hash) {
+        int[] index = buckets;
+        if (index == null) {
+            index = buildBuckets();
+        }
+        int i = index[bucketOf(hash, bucketShift)];
+        while (i < tokens.length && tokens[i] < hash) {
+            i++;
+        }
+        return i == tokens.length ? 0 : i;
+    }
+
+    // top bits of the hash in signed order (sign bit flipped), the order of tokens[]
+    private static int bucketOf(long hash, int shift) {
+        return (int) ((hash ^ Long.MIN_VALUE) >>> shift);
+    }
+
+    private int[] buildBuckets() {
+        int bits = Math.min(24, Math.max(1, 65 - Long.numberOfLeadingZeros(Math.max(1, tokens.length))));
+        int shift = 64 - bits;
+        int[] index = new int[1 << bits];
+        int t = 0;
+        for (int b = 0; b < index.length; b++) {
+            while (t < tokens.length && bucketOf(tokens[t], shift) < b) {
+                t++;
+            }
+            index[b] = t;
+        }
+        bucketShift = shift;
+        buckets = index;
+        return index;
+    }
+
+    public int ownerOf(long hash) {
+        return owners[ceilingIndex(hash)];
+    }
+
+    public int nextIndex(int index) {
+        return index + 1 == tokens.length ? 0 : index + 1;
+    }
+
+    public int prevIndex(int index) {
+        return index == 0 ? tokens.length - 1 : index - 1;
+    }
+
+    public int distinctOwners() {
+        int[] sorted = owners.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) distinct++;
+        }
+        return distinct;
+    }
+
+    /**
+     * Successor table at least `width` wide (capped at the number of distinct owners).
+     * Row i is derived from row i + 1: owner i first, then row i + 1 without owner i, so the table costs O(tokens * width).
+     */
+    public Successors successors(int width) {
+        Successors cached = successors;
+        if (cached != null && (cached.width >= width || cached.allOwners)) {
+            return cached;
+        }
+
+        int distinct = distinctOwners();
+        boolean allOwners = width >= distinct;
+        width = Math.min(width, distinct);
+        int n = tokens.length;
+        int[] table = new int[n * width];
+        if (n == 0 || width == 0) {
+            return successors = new Successors(width, table, allOwners);
+        }
+
+        // the last row wraps around the ring, walk it directly
+        int last = (n - 1) * width;
+        int found = 0;
+        for (int i = n - 1, steps = 0; found < width && steps < n; i = nextIndex(i), steps++) {
+            if (!contains(table, last, found, owners[i])) {
+                table[last + found++] = owners[i];
+            }
+        }
+
+        for (int i = n - 2; i >= 0; i--) {
+            int row = i * width;
+            int nextRow = row + width;
+            table[row] = owners[i];
+            int k = 1;
+            for (int r = 0; k < width; r++) {
+                if (table[nextRow + r] != owners[i]) {
+                    table[row + k++] = table[nextRow + r];
+                }
+            }
+        }
+        return successors = new Successors(width, table, allOwners);
+    }
+
+    private static boolean contains(int[] table, int from, int length, int owner) {
+        for (int i = from; i < from + length; i++) {
+            if (table[i] == owner) return true;
+        }
+        return false;
+    }
+
+    /** New ring with the given tokens added for owner, existing tokens are left untouched. */
+    public TokenRing withTokens(long[] newTokens, int owner) {
+        long[] added = newTokens.clone();
+        Arrays.sort(added);
+
+        long[] mergedTokens = new long[tokens.length + added.length];
+        int[] mergedOwners = new int[mergedTokens.length];
+        int i = 0, j = 0, k = 0;
+        while (i < tokens.length || j < added.length) {
+            if (j == added.length || (i < tokens.length && tokens[i] <= added[j])) {
+                mergedTokens[k] = tokens[i];
+                mergedOwners[k++] = owners[i++];
+            } else {
+                mergedTokens[k] = added[j++];
+                mergedOwners[k++] = owner;
+            }
+        }
+        return new TokenRing(mergedTokens, mergedOwners);
+    }
+
+    /** New ring without the given tokens (tokens not on the ring are ignored). */
+    public TokenRing withoutTokens(long[] removedTokens) {
+        long[] removed = removedTokens.clone();
+        Arrays.sort(removed);
+
+        long[] keptTokens = new long[tokens.length];
+        int[] keptOwners = new int[tokens.length];
+        int k = 0;
+        for (int i = 0, j = 0; i < tokens.length; i++) {
+            while (j < removed.length && removed[j] < tokens[i]) j++;
+            if (j < removed.length && removed[j] == tokens[i]) {
+                j++;
+                continue;
+            }
+            keptTokens[k] = tokens[i];
+            keptOwners[k++] = owners[i];
+        }
+        return new TokenRing(Arrays.copyOf(keptTokens, k), Arrays.copyOf(keptOwners, k));
+    }
+
+    /** New ring with every token of owner removed. */
+    public TokenRing withoutOwner(int owner) {
+        int remaining = 0;
+        for (int o : owners) {
+            if (o != owner) remaining++;
+        }
+
+        long[] keptTokens = new long[remaining];
+        int[] keptOwners = new int[remaining];
+        for (int i = 0, k = 0; i < tokens.length; i++) {
+            if (owners[i] != owner) {
+                keptTokens[k] = tokens[i];
+                keptOwners[k++] = owners[i];
+            }
+        }
+        return new TokenRing(keptTokens, keptOwners);
+    }
+}
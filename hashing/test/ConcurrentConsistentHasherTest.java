@@ -0,0 +1,110 @@
+package hashing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import hashing.ConsistentHasher.RingMode;
+
+class ConcurrentConsistentHasherTest {
+    @Test
+    void routesLikeTheLong64Ring() throws Exception {
+        ConcurrentConsistentHasher concurrent = new ConcurrentConsistentHasher(50);
+        ConsistentHasher ring = new ConsistentHasher(50, RingMode.LONG_64);
+        for (int i = 0; i < 10; i++) {
+            concurrent.addServer("S" + i, i);
+            ring.addServer("S" + i, i);
+        }
+        concurrent.removeServer(4);
+        ring.removeServer(4);
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(ring.route("k" + i), concurrent.route("k" + i));
+        }
+    }
+
+    @Test
+    void preferenceListsMatchTheLong64Ring() throws Exception {
+        ConcurrentConsistentHasher concurrent = new ConcurrentConsistentHasher(50);
+        ConsistentHasher ring = new ConsistentHasher(50, RingMode.LONG_64);
+        for (int i = 0; i < 6; i++) {
+            concurrent.addServer("S" + i, i);
+            ring.addServer("S" + i, i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            ConcurrentConsistentHasher.Server[] list = concurrent.getPreferenceList("k" + i, 3);
+            List<ConsistentHasher.Server> expected = ring.getPreferenceList("k" + i, 3);
+            assertEquals(expected.size(), list.length);
+            for (int rank = 0; rank < list.length; rank++) {
+                assertEquals(expected.get(rank).id, list[rank].id);
+            }
+        }
+    }
+
+    @Test
+    void warmStartsFromEitherHashersSnapshot(@TempDir Path dir) throws Exception {
+        ConcurrentConsistentHasher concurrent = new ConcurrentConsistentHasher(50);
+        ConsistentHasher ring = new ConsistentHasher(50, RingMode.LONG_64);
+        for (int i = 0; i < 10; i++) {
+            concurrent.addServer("S" + i, i);
+            ring.addServer("S" + i, i);
+        }
+        concurrent.writeSnapshot(dir.resolve("concurrent"));
+        ring.writeSnapshot(dir.resolve("ring"));
+        ConcurrentConsistentHasher fromConcurrent = ConcurrentConsistentHasher.fromSnapshot(dir.resolve("concurrent"));
+        ConcurrentConsistentHasher fromRing = ConcurrentConsistentHasher.fromSnapshot(dir.resolve("ring"));
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(concurrent.route("k" + i), fromConcurrent.route("k" + i));
+            assertEquals(concurrent.route("k" + i), fromRing.route("k" + i));
+        }
+    }
+
+    @Test
+    void bigIntegerSnapshotsAreRejected(@TempDir Path dir) throws Exception {
+        ConsistentHasher ring = new ConsistentHasher(50, RingMode.BIG_INTEGER);
+        ring.addServer("S0", 0);
+        ring.writeSnapshot(dir.resolve("ring"));
+        assertThrows(IOException.class, () -> ConcurrentConsistentHasher.fromSnapshot(dir.resolve("ring")));
+    }
+
+    @Test
+    void readersNeverSeeAHalfBuiltRing() throws Exception {
+        ConcurrentConsistentHasher hasher = new ConcurrentConsistentHasher(50);
+        hasher.addServer("S0", 0); // never removed, so every snapshot routes somewhere
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; !done.get(); i++) {
+                        int id = hasher.route("k" + i);
+                        assertTrue(id >= 0 && id < 8, "routed to " + id);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            readers[t].start();
+        }
+        for (int round = 0; round < 200; round++) {
+            int id = 1 + round % 7;
+            hasher.addServer("S" + id, id);
+            hasher.removeServer(id);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get());
+    }
+}
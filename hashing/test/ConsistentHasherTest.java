@@ -0,0 +1,362 @@
+package hashing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import hashing.ConsistentHasher.RingMode;
+
+class ConsistentHasherTest {
+    private static ConsistentHasher ring(RingMode mode, int servers) throws NoSuchAlgorithmException {
+        ConsistentHasher hasher = new ConsistentHasher(50, mode);
+        for (int i = 0; i < servers; i++) {
+            hasher.addServer("S" + i, i);
+        }
+        return hasher;
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void storedKeysAreReadBackFromTheirOwner(RingMode mode) throws Exception {
+        ConsistentHasher hasher = ring(mode, 8);
+        for (int i = 0; i < 5000; i++) {
+            hasher.add("k" + i, "v" + i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("v" + i, hasher.get("k" + i));
+            assertEquals(hasher.route("k" + i), hasher.getServer("k" + i).id);
+            assertTrue(hasher.getServer("k" + i).storage.containsValue("v" + i));
+        }
+    }
+
+    @Test
+    void long64RoutingIsStableAcrossInstances() throws Exception {
+        ConsistentHasher a = ring(RingMode.LONG_64, 8);
+        ConsistentHasher b = ring(RingMode.LONG_64, 8);
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(a.route("k" + i), b.route("k" + i));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void removingAServerOnlyMovesItsOwnKeys(RingMode mode) throws Exception {
+        ConsistentHasher hasher = ring(mode, 8);
+        Map<String, Integer> before = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            before.put("k" + i, hasher.route("k" + i));
+        }
+        hasher.removeServer(3);
+        int moved = 0;
+        for (Map.Entry<String, Integer> e : before.entrySet()) {
+            int now = hasher.route(e.getKey());
+            if (e.getValue() != 3) {
+                assertEquals(e.getValue(), now, e.getKey());
+            } else {
+                assertTrue(now != 3);
+                moved++;
+            }
+        }
+        assertTrue(moved > 20_000 / 8 / 2, "server 3 owned only " + moved + " keys");
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void preferenceListsAreDistinctServersOwnerFirst(RingMode mode) throws Exception {
+        ConsistentHasher hasher = ring(mode, 6);
+        for (int i = 0; i < 5000; i++) {
+            List<ConsistentHasher.Server> list = hasher.getPreferenceList("k" + i, 3);
+            assertEquals(3, list.size());
+            assertEquals(hasher.route("k" + i), list.get(0).id);
+            Set<Integer> ids = new HashSet<>();
+            for (ConsistentHasher.Server s : list) {
+                assertTrue(ids.add(s.id), "repeated server " + s.id);
+            }
+        }
+        assertEquals(6, hasher.getPreferenceList("k", 10).size());
+    }
+
+    // steps the migration in small batches with reads and writes in between, checking every read against truth
+    private static void migrate(ConsistentHasher hasher, ConsistentHasher.Migration migration, Map<String, String> truth, Random random) {
+        while (!migration.isDone()) {
+            assertTrue(migration.step(50) <= 50);
+            for (int j = 0; j < 20; j++) {
+                String key = "k" + random.nextInt(4000);
+                if (random.nextInt(3) == 0) {
+                    hasher.remove(key);
+                    truth.remove(key);
+                } else {
+                    String value = "x" + random.nextInt();
+                    hasher.add(key, value);
+                    truth.put(key, value);
+                }
+            }
+            for (int j = 0; j < 50; j++) {
+                String key = "k" + random.nextInt(4000);
+                assertEquals(truth.get(key), hasher.get(key), key);
+            }
+        }
+    }
+
+    // every key readable, stored exactly once, on its owner unless bounded loads spilled it
+    private static void assertPlacement(ConsistentHasher hasher, Map<String, String> truth, boolean spills) {
+        for (Map.Entry<String, String> e : truth.entrySet()) {
+            assertEquals(e.getValue(), hasher.get(e.getKey()), e.getKey());
+            if (!spills) {
+                assertTrue(hasher.getServer(e.getKey()).storage.containsValue(e.getValue()), e.getKey());
+            }
+        }
+        int stored = 0;
+        for (ConsistentHasher.Server s : hasher.getPreferenceList("x", Integer.MAX_VALUE)) {
+            stored += s.storage.size();
+        }
+        assertEquals(truth.size(), stored);
+    }
+
+    private static Map<String, String> fill(ConsistentHasher hasher, int keys) {
+        Map<String, String> truth = new HashMap<>();
+        for (int i = 0; i < keys; i++) {
+            truth.put("k" + i, "v" + i);
+            hasher.add("k" + i, "v" + i);
+        }
+        return truth;
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void migrationsLoseNoKeysUnderTraffic(RingMode mode) throws Exception {
+        ConsistentHasher hasher = ring(mode, 1);
+        Map<String, String> truth = fill(hasher, 3000);
+        Random random = new Random(7);
+        List<Integer> live = new ArrayList<>(List.of(0));
+        int next = 1;
+        for (int round = 0; round < 30; round++) {
+            ConsistentHasher.Migration migration;
+            if (live.size() < 2 || random.nextBoolean()) {
+                migration = hasher.beginAddServer("S" + next, next);
+                live.add(next++);
+            } else {
+                migration = hasher.beginRemoveServer(live.remove(random.nextInt(live.size())), false);
+            }
+            migrate(hasher, migration, truth, random);
+            assertPlacement(hasher, truth, false);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void aJoinMovesOnlyTheKeysTheNewServerTakesOver(RingMode mode) throws Exception {
+        ConsistentHasher hasher = ring(mode, 5);
+        Map<String, String> truth = fill(hasher, 10_000);
+        Map<String, Integer> before = new HashMap<>();
+        for (String key : truth.keySet()) {
+            before.put(key, hasher.route(key));
+        }
+        ConsistentHasher.Migration migration = hasher.beginAddServer("S5", 5);
+        migration.drain();
+        int takenOver = 0;
+        for (String key : truth.keySet()) {
+            int owner = hasher.route(key);
+            if (owner == 5) {
+                takenOver++;
+            } else {
+                assertEquals(before.get(key), owner, key);
+            }
+        }
+        assertEquals(takenOver, migration.getMovedKeys());
+        assertEquals(migration.getTotalRanges(), migration.getCompletedRanges());
+    }
+
+    private static void assertLoadBound(ConsistentHasher hasher, double epsilon, int keys, int servers) {
+        ConsistentHasher.LoadStats stats = hasher.getLoadStats();
+        long cap = (long) Math.ceil((1 + epsilon) * keys / servers);
+        assertTrue(stats.maxLoad <= cap, stats.toString());
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void boundedLoadsCapEveryServerOnInsert(RingMode mode) throws Exception {
+        ConsistentHasher hasher = new ConsistentHasher(3, mode); // few vnodes, so the ring alone is lopsided
+        hasher.enableBoundedLoads(0.1);
+        for (int i = 0; i < 8; i++) {
+            hasher.addServer("S" + i, i);
+        }
+        Map<String, String> truth = fill(hasher, 20_000);
+        assertLoadBound(hasher, 0.1, 20_000, 8);
+        assertTrue(hasher.getLoadStats().spills > 0);
+        assertPlacement(hasher, truth, true);
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void boundedLoadsHoldAfterEveryMembershipChange(RingMode mode) throws Exception {
+        ConsistentHasher hasher = new ConsistentHasher(10, mode);
+        hasher.enableBoundedLoads(0.25);
+        for (int i = 0; i < 5; i++) {
+            hasher.addServer("S" + i, i);
+        }
+        Map<String, String> truth = fill(hasher, 20_000);
+        Random random = new Random(1);
+        List<Integer> live = new ArrayList<>(List.of(0, 1, 2, 3, 4));
+        int next = 5;
+        for (int round = 0; round < 20; round++) {
+            if (live.size() < 3 || random.nextBoolean()) {
+                hasher.addServer("S" + next, next);
+                live.add(next++);
+            } else {
+                hasher.removeServer(live.remove(random.nextInt(live.size())));
+            }
+            assertLoadBound(hasher, 0.25, 20_000, live.size());
+            assertPlacement(hasher, truth, true);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void keysFollowTheWeights(RingMode mode) throws Exception {
+        ConsistentHasher hasher = new ConsistentHasher(200, mode);
+        hasher.addServer("light", 0, 1.0);
+        hasher.addServer("heavy", 1, 3.0);
+        int heavy = 0;
+        for (int i = 0; i < 40_000; i++) {
+            heavy += hasher.route("k" + i);
+        }
+        assertEquals(0.75, heavy / 40_000.0, 0.05);
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void reweightOnlyMovesKeysToOrFromThatServer(RingMode mode) throws Exception {
+        ConsistentHasher hasher = ring(mode, 6);
+        int[] before = new int[20_000];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = hasher.route("k" + i);
+        }
+        hasher.reweight(2, 2.5);
+        for (int i = 0; i < before.length; i++) {
+            int after = hasher.route("k" + i);
+            assertTrue(after == before[i] || after == 2, "k" + i + " moved " + before[i] + " -> " + after);
+        }
+        hasher.reweight(2, 0.5);
+        for (int i = 0; i < before.length; i++) {
+            int after = hasher.route("k" + i);
+            assertTrue(after == before[i] || before[i] == 2, "k" + i + " moved " + before[i] + " -> " + after);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void weightedChurnLosesNoKeys(RingMode mode) throws Exception {
+        ConsistentHasher hasher = new ConsistentHasher(20, mode);
+        hasher.addServer("S0", 0);
+        Map<String, String> truth = fill(hasher, 3000);
+        Random random = new Random(7);
+        List<Integer> live = new ArrayList<>(List.of(0));
+        int next = 1;
+        for (int round = 0; round < 30; round++) {
+            ConsistentHasher.Migration migration;
+            int op = random.nextInt(3);
+            if (op == 2) {
+                migration = hasher.beginReweight(live.get(random.nextInt(live.size())), 0.2 + random.nextDouble() * 3);
+            } else if (live.size() < 2 || op == 0) {
+                migration = hasher.beginAddServer("S" + next, next, 0.3 + random.nextDouble() * 2);
+                live.add(next++);
+            } else {
+                migration = hasher.beginRemoveServer(live.remove(random.nextInt(live.size())), false);
+            }
+            migrate(hasher, migration, truth, random);
+            assertPlacement(hasher, truth, false);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void boundedLoadsHoldAfterAReweight(RingMode mode) throws Exception {
+        ConsistentHasher hasher = new ConsistentHasher(10, mode);
+        hasher.enableBoundedLoads(0.25);
+        for (int i = 0; i < 5; i++) {
+            hasher.addServer("S" + i, i);
+        }
+        Map<String, String> truth = fill(hasher, 20_000);
+        hasher.reweight(1, 4.0);
+        assertLoadBound(hasher, 0.25, 20_000, 5);
+        hasher.reweight(1, 0.25);
+        assertLoadBound(hasher, 0.25, 20_000, 5);
+        assertPlacement(hasher, truth, true);
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void snapshotsRestoreTheSameRouting(RingMode mode, @TempDir Path dir) throws Exception {
+        ConsistentHasher hasher = new ConsistentHasher(50, mode);
+        for (int i = 0; i < 12; i++) {
+            hasher.addServer("S" + i, i, 0.5 + i % 3);
+        }
+        hasher.removeServer(3);
+        Path file = dir.resolve("ring.snapshot");
+        hasher.writeSnapshot(file);
+        ConsistentHasher restored = ConsistentHasher.fromSnapshot(file);
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(hasher.route("k" + i), restored.route("k" + i));
+        }
+        // the restored ring keeps the weights and vnode counts, so it changes like the original
+        hasher.reweight(5, 3.0);
+        restored.reweight(5, 3.0);
+        hasher.addServer("S3", 3);
+        restored.addServer("S3", 3);
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(hasher.route("k" + i), restored.route("k" + i));
+        }
+    }
+
+    @Test
+    void snapshotsRejectOtherFiles(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("not.snapshot");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> ConsistentHasher.fromSnapshot(file));
+    }
+
+    @ParameterizedTest
+    @EnumSource(RingMode.class)
+    void routeBatchMatchesRoute(RingMode mode) throws Exception {
+        for (int servers : new int[]{1, 7, 100}) {
+            ConsistentHasher hasher = ring(mode, servers);
+            String[] keys = new String[40_000]; // several parallel chunks and a partial hashing block
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = "key" + i;
+            }
+            int[] batch = hasher.routeBatch(keys);
+            int[] parallel = hasher.routeBatch(keys, ForkJoinPool.commonPool());
+            for (int i = 0; i < keys.length; i++) {
+                int expected = hasher.route(keys[i]);
+                assertEquals(expected, batch[i], keys[i]);
+                assertEquals(expected, parallel[i], keys[i]);
+            }
+        }
+        assertEquals(0, ring(mode, 3).routeBatch(new String[0]).length);
+    }
+
+    @Test
+    void routingWithoutServersFails() throws Exception {
+        assertThrows(IllegalStateException.class, () -> ring(RingMode.LONG_64, 0).route("k"));
+    }
+}
@@ -0,0 +1,63 @@
+package hashing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class JumpConsistentHasherTest {
+    @Test
+    void growingByOneBucketOnlyMovesKeysIntoTheNewBucket() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long key = random.nextLong();
+            for (int buckets = 1; buckets < 100; buckets++) {
+                int before = JumpConsistentHasher.jump(key, buckets);
+                int after = JumpConsistentHasher.jump(key, buckets + 1);
+                assertTrue(before >= 0 && before < buckets);
+                assertTrue(after == before || after == buckets, key + " moved " + before + " -> " + after);
+            }
+        }
+    }
+
+    @Test
+    void bucketsGetAnEvenShare() {
+        int[] counts = new int[10];
+        for (int i = 0; i < 100_000; i++) {
+            counts[JumpConsistentHasher.jump(Hash64.hash("k" + i), counts.length)]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - 10_000) < 500, "bucket holds " + count);
+        }
+    }
+
+    @Test
+    void removingTheLastServerOnlyMovesItsKeys() {
+        JumpConsistentHasher hasher = new JumpConsistentHasher();
+        for (int i = 0; i < 8; i++) {
+            hasher.addServer("S" + i, i);
+        }
+        int[] before = new int[20_000];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = hasher.route("k" + i);
+        }
+        hasher.removeServer(7);
+        for (int i = 0; i < before.length; i++) {
+            if (before[i] != 7) {
+                assertEquals(before[i], hasher.route("k" + i));
+            }
+        }
+    }
+
+    @Test
+    void rejectsDuplicateAndUnknownServers() {
+        JumpConsistentHasher hasher = new JumpConsistentHasher();
+        assertThrows(IllegalStateException.class, () -> hasher.route("k"));
+        hasher.addServer("S0", 0);
+        assertThrows(IllegalArgumentException.class, () -> hasher.addServer("again", 0));
+        assertThrows(IllegalArgumentException.class, () -> hasher.removeServer(1));
+    }
+}
@@ -0,0 +1,68 @@
+package hashing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class MaglevHasherTest {
+    private static MaglevHasher hasher(int servers) {
+        MaglevHasher hasher = new MaglevHasher();
+        for (int i = 0; i < servers; i++) {
+            hasher.addServer("S" + i, i);
+        }
+        return hasher;
+    }
+
+    @Test
+    void serversGetAnEvenShare() {
+        MaglevHasher hasher = hasher(10);
+        int[] counts = new int[10];
+        for (int i = 0; i < 100_000; i++) {
+            counts[hasher.route("k" + i)]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - 10_000) < 500, "server holds " + count);
+        }
+    }
+
+    @Test
+    void removingAServerMovesFewOtherKeys() {
+        MaglevHasher hasher = hasher(10);
+        int[] before = new int[100_000];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = hasher.route("k" + i);
+        }
+        hasher.removeServer(4);
+        int others = 0;
+        int otherMoved = 0;
+        for (int i = 0; i < before.length; i++) {
+            int after = hasher.route("k" + i);
+            if (before[i] == 4) {
+                assertTrue(after != 4);
+            } else {
+                others++;
+                if (after != before[i]) {
+                    otherMoved++;
+                }
+            }
+        }
+        assertTrue(otherMoved < others / 20, otherMoved + " of " + others + " keys of other servers moved");
+    }
+
+    @Test
+    void sameMembershipGivesTheSameTable() {
+        MaglevHasher a = hasher(7);
+        MaglevHasher b = hasher(7);
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(a.route("k" + i), b.route("k" + i));
+        }
+    }
+
+    @Test
+    void tableSizeMustBePrime() {
+        assertThrows(IllegalArgumentException.class, () -> new MaglevHasher(65536));
+        assertThrows(IllegalStateException.class, () -> new MaglevHasher(7).route("k"));
+    }
+}
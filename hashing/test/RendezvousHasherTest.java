@@ -0,0 +1,275 @@
+package hashing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import hashing.RendezvousHasher.ScoringMode;
+
+class RendezvousHasherTest {
+    private static RendezvousHasher hasher(ScoringMode mode, int replicationFactor, int servers) throws Exception {
+        RendezvousHasher hasher = new RendezvousHasher(replicationFactor, mode);
+        for (int i = 0; i < servers; i++) {
+            hasher.addServer("S" + i, i);
+        }
+        return hasher;
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScoringMode.class)
+    void routeBatchMatchesRoute(ScoringMode mode) throws Exception {
+        RendezvousHasher hasher = hasher(mode, 1, 20);
+        String[] keys = new String[5000]; // several parallel chunks
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "key" + i;
+        }
+        int[] batch = hasher.routeBatch(keys);
+        int[] parallel = hasher.routeBatch(keys, ForkJoinPool.commonPool());
+        for (int i = 0; i < keys.length; i++) {
+            int expected = hasher.route(keys[i]);
+            assertEquals(expected, batch[i], keys[i]);
+            assertEquals(expected, parallel[i], keys[i]);
+        }
+    }
+
+    private static Set<Integer> replicas(RendezvousHasher hasher, String key) {
+        RendezvousHasher.Server[] out = new RendezvousHasher.Server[3];
+        int n = hasher.selectReplicas(key, out);
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            ids.add(out[i].id);
+        }
+        assertEquals(n, ids.size(), "repeated replica for " + key);
+        return ids;
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScoringMode.class)
+    void replicasAreDistinctBestFirst(ScoringMode mode) throws Exception {
+        RendezvousHasher hasher = hasher(mode, 3, 70);
+        RendezvousHasher.Server[] out = new RendezvousHasher.Server[3];
+        int[] first = new int[70];
+        for (int i = 0; i < 70_000; i++) {
+            String key = "k" + i;
+            assertEquals(3, hasher.selectReplicas(key, out));
+            assertEquals(hasher.route(key), out[0].id);
+            assertEquals(3, replicas(hasher, key).size());
+            first[out[0].id]++;
+        }
+        for (int count : first) {
+            assertTrue(Math.abs(count - 1000) < 200, "server is first for " + count + " keys");
+        }
+        assertEquals(2, hasher(mode, 3, 2).selectReplicas("k", out));
+    }
+
+    @Test
+    void fast64ReplicasAreTheTopScores() throws Exception {
+        RendezvousHasher hasher = hasher(ScoringMode.FAST_64, 3, 30);
+        RendezvousHasher.Server[] out = new RendezvousHasher.Server[3];
+        for (int i = 0; i < 10_000; i++) {
+            long keyHash = Hash64.hash("k" + i);
+            hasher.selectReplicas("k" + i, out);
+            double[] scores = new double[30];
+            for (int id = 0; id < 30; id++) {
+                long seed = new RendezvousHasher.Server("S" + id, id).seed;
+                scores[id] = RendezvousHasher.flatScore(Hash64.mix(keyHash ^ seed), 1.0, true);
+            }
+            double[] sorted = scores.clone();
+            Arrays.sort(sorted);
+            for (int rank = 0; rank < 3; rank++) {
+                assertEquals(sorted[29 - rank], scores[out[rank].id]);
+            }
+        }
+    }
+
+    // the HRW property: a key's replica set only changes if one of its replicas leaves
+    @ParameterizedTest
+    @EnumSource(value = ScoringMode.class, names = {"SHA1", "FAST_64"})
+    void removingAServerOnlyReplacesItsOwnReplicas(ScoringMode mode) throws Exception {
+        RendezvousHasher hasher = hasher(mode, 3, 12);
+        List<Set<Integer>> before = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            before.add(replicas(hasher, "k" + i));
+        }
+        hasher.removeServer(5);
+        for (int i = 0; i < 5000; i++) {
+            Set<Integer> after = replicas(hasher, "k" + i);
+            if (!before.get(i).contains(5)) {
+                assertEquals(before.get(i), after);
+            } else {
+                Set<Integer> kept = new HashSet<>(before.get(i));
+                kept.remove(5);
+                assertTrue(after.containsAll(kept), before.get(i) + " -> " + after);
+            }
+        }
+    }
+
+    // every key readable and stored on exactly its current replicas
+    private static void assertPlacement(RendezvousHasher hasher, Map<String, String> truth) {
+        RendezvousHasher.Server[] out = new RendezvousHasher.Server[3];
+        for (Map.Entry<String, String> e : truth.entrySet()) {
+            assertEquals(e.getValue(), hasher.get(e.getKey()), e.getKey());
+            int n = hasher.selectReplicas(e.getKey(), out);
+            for (int i = 0; i < n; i++) {
+                assertEquals(e.getValue(), out[i].storage.get(e.getKey()), e.getKey() + " on " + out[i].id);
+            }
+        }
+    }
+
+    private static Map<String, String> fill(RendezvousHasher hasher, int keys) {
+        Map<String, String> truth = new HashMap<>();
+        for (int i = 0; i < keys; i++) {
+            hasher.add("k" + i, "v" + i);
+            truth.put("k" + i, "v" + i);
+        }
+        return truth;
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScoringMode.class)
+    void stepsAreBoundedByExaminedKeys(ScoringMode mode) throws Exception {
+        RendezvousHasher hasher = hasher(mode, 3, 6);
+        fill(hasher, 3000);
+        RendezvousHasher.Rebalance rebalance = hasher.beginAddServer("S6", 6);
+        assertEquals(3000, rebalance.getTotalKeys());
+        for (int checked = 0; !rebalance.isDone(); ) {
+            assertTrue(rebalance.step(100) <= 100);
+            checked = Math.min(3000, checked + 100);
+            assertEquals(checked, rebalance.getCheckedKeys());
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScoringMode.class)
+    void membershipChangesUnderTrafficLoseNoKeys(ScoringMode mode) throws Exception {
+        RendezvousHasher hasher = hasher(mode, 3, 6);
+        Map<String, String> truth = new HashMap<>();
+        List<Integer> live = new ArrayList<>(List.of(0, 1, 2, 3, 4, 5));
+        Random random = new Random(1);
+        RendezvousHasher.Rebalance rebalance = null;
+        int next = 6;
+        for (int op = 0; op < 20_000; op++) {
+            int choice = random.nextInt(100);
+            String key = "k" + random.nextInt(3000);
+            if (choice < 40) {
+                hasher.add(key, "v" + op);
+                truth.put(key, "v" + op);
+            } else if (choice < 50) {
+                hasher.remove(key);
+                truth.remove(key);
+            } else if (choice < 90) {
+                assertEquals(truth.get(key), hasher.get(key), key);
+            } else if (choice < 99) {
+                if (rebalance != null && !rebalance.isDone()) {
+                    rebalance.step(1 + random.nextInt(20));
+                }
+            } else if (live.size() < 5 || random.nextBoolean()) {
+                rebalance = hasher.beginAddServer("S" + next, next);
+                live.add(next++);
+            } else {
+                rebalance = hasher.beginRemoveServer(live.remove(random.nextInt(live.size())));
+            }
+        }
+        if (rebalance != null) {
+            rebalance.drain();
+        }
+        assertPlacement(hasher, truth);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ScoringMode.class, names = {"SHA1", "FAST_64"})
+    void joinsAndLeavesMoveOnlyTheKeysWhoseReplicasChange(ScoringMode mode) throws Exception {
+        RendezvousHasher hasher = hasher(mode, 3, 8);
+        Map<String, String> truth = fill(hasher, 5000);
+        RendezvousHasher.Rebalance join = hasher.beginAddServer("S8", 8);
+        join.drain();
+        int gained = 0;
+        for (String key : truth.keySet()) {
+            if (replicas(hasher, key).contains(8)) {
+                gained++;
+            }
+        }
+        assertEquals(gained, join.getMovedKeys());
+
+        int held = 0;
+        for (String key : truth.keySet()) {
+            if (replicas(hasher, key).contains(2)) {
+                held++;
+            }
+        }
+        RendezvousHasher.Rebalance leave = hasher.beginRemoveServer(2);
+        leave.drain();
+        assertEquals(held, leave.getTotalKeys());
+        assertEquals(held, leave.getMovedKeys());
+        assertPlacement(hasher, truth);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScoringMode.class)
+    void keysFollowTheWeights(ScoringMode mode) throws Exception {
+        RendezvousHasher hasher = new RendezvousHasher(1, mode);
+        hasher.addServer("light", 0, 1.0);
+        hasher.addServer("heavy", 1, 3.0);
+        hasher.addServer("medium", 2, 2.0);
+        int[] counts = new int[3];
+        for (int i = 0; i < 60_000; i++) {
+            counts[hasher.route("k" + i)]++;
+        }
+        assertEquals(1 / 6.0, counts[0] / 60_000.0, 0.02);
+        assertEquals(3 / 6.0, counts[1] / 60_000.0, 0.02);
+        assertEquals(2 / 6.0, counts[2] / 60_000.0, 0.02);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ScoringMode.class, names = {"SHA1", "FAST_64"})
+    void reweightOnlyMovesKeysToOrFromThatServer(ScoringMode mode) throws Exception {
+        RendezvousHasher hasher = hasher(mode, 1, 8);
+        int[] before = new int[20_000];
+        for (int i = 0; i < before.length; i++) {
+            before[i] = hasher.route("k" + i);
+        }
+        hasher.reweight(3, 2.5);
+        int[] raised = new int[before.length];
+        for (int i = 0; i < before.length; i++) {
+            raised[i] = hasher.route("k" + i);
+            assertTrue(raised[i] == before[i] || raised[i] == 3, "k" + i + " moved " + before[i] + " -> " + raised[i]);
+        }
+        hasher.reweight(3, 0.5);
+        for (int i = 0; i < before.length; i++) {
+            int after = hasher.route("k" + i);
+            assertTrue(after == raised[i] || raised[i] == 3, "k" + i + " moved " + raised[i] + " -> " + after);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ScoringMode.class)
+    void weightedRoutingIsConsistent(ScoringMode mode) throws Exception {
+        RendezvousHasher hasher = hasher(mode, 3, 10);
+        Map<String, String> truth = fill(hasher, 3000);
+        hasher.reweight(4, 3.0);
+        hasher.reweight(7, 0.25);
+        String[] keys = truth.keySet().toArray(new String[0]);
+        int[] batch = hasher.routeBatch(keys);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(hasher.route(keys[i]), batch[i], keys[i]);
+        }
+        assertPlacement(hasher, truth);
+        assertThrows(IllegalArgumentException.class, () -> hasher.reweight(4, 0));
+        assertThrows(IllegalArgumentException.class, () -> hasher.addServer("bad", 99, Double.NaN));
+    }
+}
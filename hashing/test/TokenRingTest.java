@@ -0,0 +1,94 @@
+package hashing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TokenRingTest {
+    static TokenRing randomRing(int owners, int tokensPerOwner, long seed) {
+        Random random = new Random(seed);
+        TokenRing ring = TokenRing.EMPTY;
+        for (int owner = 0; owner < owners; owner++) {
+            long[] tokens = new long[tokensPerOwner];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = random.nextLong();
+            }
+            ring = ring.withTokens(tokens, owner);
+        }
+        return ring;
+    }
+
+    // first token >= hash, wrapping to 0
+    static int linearCeiling(TokenRing ring, long hash) {
+        int i = 0;
+        while (i < ring.size() && ring.tokenAt(i) < hash) {
+            i++;
+        }
+        return i == ring.size() ? 0 : i;
+    }
+
+    @Test
+    void ownerOfIsTheFirstTokenClockwise() {
+        TokenRing ring = randomRing(7, 20, 1);
+        Random random = new Random(2);
+        for (int i = 0; i < 10_000; i++) {
+            long hash = random.nextLong();
+            assertEquals(ring.ownerAt(linearCeiling(ring, hash)), ring.ownerOf(hash));
+        }
+        for (long hash : new long[]{Long.MIN_VALUE, Long.MAX_VALUE, 0, -1, ring.tokenAt(0), ring.tokenAt(ring.size() - 1)}) {
+            assertEquals(ring.ownerAt(linearCeiling(ring, hash)), ring.ownerOf(hash));
+        }
+    }
+
+    @Test
+    void ceilingIndexMatchesALinearScan() {
+        Random random = new Random(4);
+        for (int owners : new int[]{1, 3, 50, 400}) {
+            TokenRing ring = randomRing(owners, owners == 1 ? 1 : 40, owners);
+            for (int i = 0; i < 20_000; i++) {
+                long hash = random.nextLong();
+                assertEquals(linearCeiling(ring, hash), ring.ceilingIndex(hash));
+            }
+            for (int i = 0; i < ring.size(); i++) {
+                long token = ring.tokenAt(i);
+                assertEquals(i, ring.ceilingIndex(token));
+                assertEquals(linearCeiling(ring, token + 1), ring.ceilingIndex(token + 1));
+            }
+        }
+    }
+
+    @Test
+    void successorsAreTheDistinctOwnersClockwise() {
+        TokenRing ring = randomRing(7, 5, 1);
+        for (int width = 1; width <= 9; width++) {
+            TokenRing.Successors successors = ring.successors(width);
+            for (int i = 0; i < ring.size(); i++) {
+                List<Integer> expected = new ArrayList<>();
+                for (int j = i, steps = 0; steps < ring.size(); j = ring.nextIndex(j), steps++) {
+                    if (!expected.contains(ring.ownerAt(j))) {
+                        expected.add(ring.ownerAt(j));
+                    }
+                }
+                for (int rank = 0; rank < Math.min(width, 7); rank++) {
+                    assertEquals(expected.get(rank), successors.ownerAt(i, rank));
+                }
+            }
+        }
+    }
+
+    @Test
+    void tokensStaySortedThroughAddAndRemove() {
+        TokenRing ring = randomRing(5, 30, 3).withoutOwner(2);
+        assertEquals(4 * 30, ring.size());
+        for (int i = 1; i < ring.size(); i++) {
+            assertTrue(ring.tokenAt(i - 1) < ring.tokenAt(i));
+            assertNotEquals(2, ring.ownerAt(i));
+        }
+    }
+}
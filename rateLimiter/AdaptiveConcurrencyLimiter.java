@@ -0,0 +1,205 @@
+package rateLimiter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Limits the number of requests in flight instead of their rate, and finds the limit by itself from the latency
+ * the downstream shows (TCP congestion control applied to a service call).
+ *
+ * allowRequest() admits while fewer than limit requests are in flight (one CAS). Every admitted request must be
+ * ended with release(rttNanos, dropped); the sample is fed to an Algorithm which moves the limit: AIMD grows it
+ * by one per round trip and cuts it by a ratio on a drop (timeout, overload error), Vegas estimates the queue at
+ * the downstream from how far the RTT is above the no-load RTT and keeps that queue small.
+ * When the backend slows down or loses capacity the limit follows within a few round trips, and grows back after.
+ */
+public class AdaptiveConcurrencyLimiter {
+    /** Computes the next limit from one completed request, called under the limiter's lock. */
+    public interface Algorithm {
+        double update(double limit, long rttNanos, int inFlight, boolean dropped);
+    }
+
+    private final Algorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    private double exactLimit; // guarded by this
+
+    public AdaptiveConcurrencyLimiter(Algorithm algorithm, int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Need 0 < minLimit <= initialLimit <= maxLimit");
+        }
+        this.algorithm = algorithm;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.exactLimit = initialLimit;
+    }
+
+    public boolean allowRequest() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /** Ends an admitted request that completed normally after rttNanos. */
+    public void release(long rttNanos) {
+        release(rttNanos, false);
+    }
+
+    /**
+     * Ends an admitted request. dropped: the downstream timed out or shed it, which is the overload signal.
+     * Requests that failed for reasons unrelated to load (bad input, ...) should be released as normal completions.
+     */
+    public void release(long rttNanos, boolean dropped) {
+        int before = inFlight.getAndDecrement();
+        if (before <= 0) {
+            inFlight.incrementAndGet();
+            throw new IllegalStateException("release() without a matching allowRequest()");
+        }
+        synchronized (this) {
+            exactLimit = Math.max(minLimit, Math.min(maxLimit, algorithm.update(exactLimit, rttNanos, before, dropped)));
+            limit = (int) exactLimit;
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Additive increase, multiplicative decrease. The limit grows by 1 per limit completions (about one per round
+     * trip) while it is actually used, and is multiplied by backoffRatio on a drop or an RTT above timeoutNanos.
+     */
+    public static Algorithm aimd(double backoffRatio, long timeoutNanos) {
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be in (0, 1)");
+        }
+        return (limit, rttNanos, inFlight, dropped) -> {
+            if (dropped || rttNanos > timeoutNanos) {
+                return limit * backoffRatio;
+            }
+            // do not grow a limit the load never reaches, it would not be backed by any measurement
+            return inFlight * 2 >= limit ? limit + 1 / limit : limit;
+        };
+    }
+
+    /**
+     * TCP Vegas. The queue at the downstream is estimated as limit * (1 - rttNoLoad / rtt): with a limit of 20 and
+     * an RTT twice the no-load one, 10 requests are waiting. Below alpha queued requests the limit grows, above beta
+     * it shrinks, both scaled by log10(limit) so large limits move faster. The no-load RTT is the minimum RTT seen,
+     * forgotten every probeInterval samples so a permanently slower backend is re-learned.
+     */
+    public static Algorithm vegas(int alpha, int beta, int probeInterval) {
+        if (alpha <= 0 || beta <= alpha || probeInterval <= 0) {
+            throw new IllegalArgumentException("Need 0 < alpha < beta and a positive probe interval");
+        }
+        return new Algorithm() {
+            private long rttNoLoad = Long.MAX_VALUE;
+            private int samples;
+
+            @Override
+            public double update(double limit, long rttNanos, int inFlight, boolean dropped) {
+                if (++samples >= probeInterval) {
+                    samples = 0;
+                    rttNoLoad = Long.MAX_VALUE;
+                }
+                rttNoLoad = Math.min(rttNoLoad, rttNanos);
+                double step = Math.max(1, Math.log10(limit));
+                if (dropped) {
+                    return limit - step * beta;
+                }
+                double queue = limit * (1 - (double) rttNoLoad / rttNanos);
+                if (queue < alpha * step) {
+                    // grow only when the limit is in use, and by at most one per round trip
+                    return inFlight * 2 >= limit ? limit + step / limit : limit;
+                }
+                if (queue > beta * step) {
+                    return limit - step / limit * (queue - beta * step);
+                }
+                return limit;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (String name : new String[] {"AIMD", "Vegas"}) {
+            Algorithm algorithm = name.equals("AIMD") ? aimd(0.5, 25_000_000L) : vegas(3, 6, 5000);
+            System.out.println(name + ":");
+            simulate(new AdaptiveConcurrencyLimiter(algorithm, 10, 1, 200));
+        }
+    }
+
+    /**
+     * 64 clients against a backend serving capacity requests at once in 5ms, queueing the rest (latency grows with
+     * the queue) and timing out past 50ms. Capacity changes 20 -> 5 -> 40 during the run.
+     */
+    private static void simulate(AdaptiveConcurrencyLimiter limiter) throws InterruptedException {
+        AtomicInteger capacity = new AtomicInteger(20);
+        AtomicInteger atBackend = new AtomicInteger();
+        AtomicLong served = new AtomicLong();
+        AtomicLong timedOut = new AtomicLong();
+        long phaseNanos = 1_000_000_000L;
+        long start = System.nanoTime();
+        int clients = 64;
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int c = 0; c < clients; c++) {
+            new Thread(() -> {
+                while (System.nanoTime() - start < 3 * phaseNanos) {
+                    if (!limiter.allowRequest()) {
+                        LockSupport.parkNanos(1_000_000); // rejected, back off
+                        continue;
+                    }
+                    long sent = System.nanoTime();
+                    int queued = atBackend.incrementAndGet();
+                    long latency = (long) (5_000_000L * Math.max(1.0, (double) queued / capacity.get()));
+                    boolean dropped = latency > 50_000_000L;
+                    LockSupport.parkNanos(Math.min(latency, 50_000_000L));
+                    atBackend.decrementAndGet();
+                    (dropped ? timedOut : served).incrementAndGet();
+                    limiter.release(System.nanoTime() - sent, dropped);
+                }
+                done.countDown();
+            }).start();
+        }
+        int[] capacities = {20, 5, 40};
+        for (int phase = 0; phase < 3; phase++) {
+            capacity.set(capacities[phase]);
+            long before = served.get();
+            StringBuilder limits = new StringBuilder();
+            for (int i = 0; i < 5; i++) {
+                LockSupport.parkNanos(phaseNanos / 5);
+                limits.append(limiter.getLimit()).append(' ');
+            }
+            System.out.printf("  capacity %2d: limit over time %s, %,d served/s%n", capacities[phase], limits, served.get() - before);
+        }
+        done.await();
+        System.out.printf("  %,d served, %,d timed out%n", served.get(), timedOut.get());
+    }
+}
+
+/*
+Pros:
+No rate to configure: the limit tracks what the backend can actually take, through slowdowns and capacity changes.
+Little's law: for a given latency, bounding concurrency bounds throughput, and excess load is rejected immediately
+instead of queueing and timing out downstream.
+Admission is one CAS; the limit update runs once per completed request.
+
+Cons:
+Every admitted request must be released exactly once, a leaked permit lowers the effective limit for good.
+Needs a steady stream of samples; a limiter seeing a few requests a minute learns nothing.
+Vegas depends on the no-load RTT: if the backend is never idle it over-estimates that RTT and lets the queue grow.
+ */
@@ -0,0 +1,134 @@
+package rateLimiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket.
+ *
+ * The whole bucket is one long: the clock time at which the bucket was (or will be) empty. Tokens are time in
+ * fixed point, one token = nanosPerToken ns, so tokens(now) = min(capacity, (now - emptyAt) / nanosPerToken)
+ * and refill needs no bookkeeping at all. Taking n tokens moves emptyAt forward by n * nanosPerToken with one CAS.
+ * This is GCRA (generic cell rate algorithm) seen as a token bucket. No lock, no allocation per decision.
+ */
+public class AtomicTokenBucketRateLimiter implements RateLimiter {
+    private final AtomicLong emptyAt;
+    private final int capacity;        // max tokens in bucket
+    private final long nanosPerToken;  // refill interval of one token
+    private final long burstNanos;     // capacity * nanosPerToken, how far emptyAt may lag behind now
+    private final Clock clock;
+
+    public AtomicTokenBucketRateLimiter(int bucketCapacity, int refillRatePerSecond) {
+        this(bucketCapacity, refillRatePerSecond, Clock.system());
+    }
+
+    public AtomicTokenBucketRateLimiter(int bucketCapacity, int refillRatePerSecond, Clock clock) {
+        if (bucketCapacity <= 0 || refillRatePerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and refill rate must be positive");
+        }
+        this.capacity = bucketCapacity;
+        // exact when the rate divides 1e9, otherwise off by at most 0.5ns per token
+        this.nanosPerToken = Math.max(1, Math.round(1_000_000_000.0 / refillRatePerSecond));
+        this.burstNanos = bucketCapacity * nanosPerToken;
+        this.clock = clock;
+        this.emptyAt = new AtomicLong(clock.nanoTime() - burstNanos); // starts full
+    }
+
+    @Override
+    public boolean allowRequest() {
+        return tryAcquire(1);
+    }
+
+    public boolean tryAcquire(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Permits must be positive");
+        }
+        if (permits > capacity) {
+            return false; // could never be satisfied
+        }
+
+        long cost = permits * nanosPerToken;
+        long now = clock.nanoTime();
+        while (true) {
+            long current = emptyAt.get();
+            long base = Math.max(current, now - burstNanos); // a full bucket does not keep refilling
+            if (now - base < cost) {
+                return false;
+            }
+            if (emptyAt.compareAndSet(current, base + cost)) {
+                return true;
+            }
+            // lost the race to another thread, re-read and retry against the same now
+        }
+    }
+
+    /** Takes as many of the requested tokens as are available, with one CAS. */
+    @Override
+    public int allowBatch(int requested) {
+        if (requested < 0) {
+            throw new IllegalArgumentException("Requested count must not be negative");
+        }
+        long now = clock.nanoTime();
+        while (true) {
+            long current = emptyAt.get();
+            long base = Math.max(current, now - burstNanos);
+            int admitted = (int) Math.min(requested, (now - base) / nanosPerToken);
+            if (admitted == 0 || emptyAt.compareAndSet(current, base + admitted * nanosPerToken)) {
+                return admitted;
+            }
+        }
+    }
+
+    /**
+     * Gives back permits taken by tryAcquire or allowBatch that were not used, e.g. because another limiter in a
+     * chain rejected the request. One atomic add; tokens above capacity are clamped away as usual.
+     */
+    public void refund(int permits) {
+        if (permits < 0) {
+            throw new IllegalArgumentException("Permits must not be negative");
+        }
+        if (permits > 0) {
+            emptyAt.addAndGet(-permits * nanosPerToken);
+        }
+    }
+
+    // Optional: get current available tokens
+    public double getTokens() {
+        long now = clock.nanoTime();
+        long base = Math.max(emptyAt.get(), now - burstNanos);
+        return (double) (now - base) / nanosPerToken;
+    }
+
+    @Override
+    public double availablePermits() {
+        return getTokens();
+    }
+
+    @Override
+    public long nanosToNextPermit() {
+        long now = clock.nanoTime();
+        long base = Math.max(emptyAt.get(), now - burstNanos);
+        return Math.max(0, base + nanosPerToken - now);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        AtomicTokenBucketRateLimiter limiter = new AtomicTokenBucketRateLimiter(10, 5); // burst 10, 5 req/s
+        for (int i = 0; i < 12; i++) {
+            System.out.println(limiter.allowRequest());
+        }
+        Thread.sleep(1000);
+        System.out.printf("After 1s: %.1f tokens, tryAcquire(3) = %b%n", limiter.getTokens(), limiter.tryAcquire(3));
+
+        // throughput against the synchronized bucket under contention: SingleLimiterBenchmark in benchmarks/
+    }
+}
+
+/*
+Pros:
+One CAS per decision, so throughput scales with cores instead of queueing on a monitor.
+Constant memory (one long), nothing to refill: tokens are derived from the clock on demand.
+tryAcquire(n) is as cheap as tryAcquire(1).
+
+Cons:
+Under extreme contention on one bucket the CAS retries, every core still writes the same cache line.
+Stripe across several buckets (each with capacity / stripes) if a single key is that hot.
+ */
@@ -0,0 +1,97 @@
+package rateLimiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Monotonic time source of the limiters, in nanoseconds from an arbitrary origin (like System.nanoTime()).
+ *
+ * system(): System.nanoTime(), exact.
+ * coarse(): a volatile refreshed by one daemon thread every ~100us. Reading it is a plain load, no clock call on the
+ * decision path, for limiters deciding millions of times a second; decisions are up to one tick late.
+ * Manual: moves only when told to, for deterministic tests that do not sleep.
+ */
+public interface Clock {
+    long nanoTime();
+
+    /**
+     * The System.nanoTime() at which this clock reads clockNanos, for waiting on it (parking, the TimerWheel).
+     * Clocks that follow System.nanoTime() return it unchanged.
+     */
+    default long toSystemNanos(long clockNanos) {
+        return clockNanos;
+    }
+
+    static Clock system() {
+        return System::nanoTime;
+    }
+
+    /** The shared coarse clock, 100us ticks. Never closed, its thread lives as long as the JVM. */
+    static Clock coarse() {
+        return Coarse.SHARED;
+    }
+
+    /**
+     * A coarse clock with its own ticker thread. Prefer the shared coarse(); an instance of its own must be closed,
+     * which stops the thread. A closed clock keeps working, reading System.nanoTime() directly.
+     */
+    final class Coarse implements Clock, AutoCloseable {
+        private static final Coarse SHARED = new Coarse(100, TimeUnit.MICROSECONDS);
+
+        private volatile long now = System.nanoTime();
+        private volatile boolean closed;
+        private final Thread ticker;
+
+        public Coarse(long tick, TimeUnit unit) {
+            long tickNanos = unit.toNanos(tick);
+            if (tickNanos <= 0) {
+                throw new IllegalArgumentException("Tick must be positive");
+            }
+            ticker = new Thread(() -> {
+                while (!closed) {
+                    LockSupport.parkNanos(tickNanos);
+                    now = System.nanoTime();
+                }
+            }, "coarse-clock");
+            ticker.setDaemon(true);
+            ticker.start();
+        }
+
+        @Override
+        public long nanoTime() {
+            return closed ? System.nanoTime() : now;
+        }
+
+        @Override
+        public void close() {
+            if (this == SHARED) {
+                throw new IllegalStateException("The shared coarse clock is used by every limiter and cannot be closed");
+            }
+            closed = true;
+            LockSupport.unpark(ticker);
+        }
+    }
+
+    final class Manual implements Clock {
+        private final AtomicLong now = new AtomicLong();
+
+        @Override
+        public long nanoTime() {
+            return now.get();
+        }
+
+        public void advance(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("Time only moves forward");
+            }
+            now.addAndGet(unit.toNanos(duration));
+        }
+
+        // waits on a manual clock are measured from the real now
+        @Override
+        public long toSystemNanos(long clockNanos) {
+            return System.nanoTime() + (clockNanos - now.get());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package rateLimiter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free version of SlidingWindowCounterRateLimiter.
+ *
+ * Every bucket slot is one long packing the bucket number it currently counts (its epoch) with the count, so a slot
+ * is rotated to a newer bucket and reset by the same CAS that proves it was stale. A running total of all slots is
+ * kept next to them: a decision is one CAS on the total plus one on the current slot, whatever the number of buckets.
+ * Whoever moves the head bucket forward expires the slots time moved past and subtracts their counts from the total.
+ *
+ * Rejected requests are not counted. For very hot limiters the quota can be split over stripes (threads spread by
+ * id); a thread whose stripe is exhausted tries the others before rejecting, so the global limit stays maxRequests.
+ */
+public class ConcurrentSlidingWindowCounterRateLimiter implements RateLimiter {
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final long bucketNanos;
+    private final int numberOfBuckets;
+    private final Window[] stripes;
+    private final Clock clock;
+    private final long origin; // bucket numbers count from here, one window before construction
+
+    private final class Window {
+        private final long maxRequests;
+        private final AtomicLongArray slots;   // (bucket number << COUNT_BITS) | count
+        private final AtomicLong total = new AtomicLong(); // sum of the slot counts
+        private final AtomicLong head;         // newest bucket number seen
+
+        Window(long maxRequests, long bucket) {
+            this.maxRequests = maxRequests;
+            this.slots = new AtomicLongArray(numberOfBuckets);
+            this.head = new AtomicLong(bucket);
+            for (int i = 0; i < numberOfBuckets; i++) {
+                // slot i counts the latest bucket number <= bucket that maps to it
+                slots.set(i, (bucket - Math.floorMod(bucket - i, numberOfBuckets)) << COUNT_BITS);
+            }
+        }
+
+        // admits up to requested with one CAS on the total, returns how many
+        int tryAcquire(long bucket, int requested) {
+            advance(bucket);
+            int admitted;
+            while (true) {
+                long t = total.get();
+                admitted = (int) Math.min(requested, maxRequests - t);
+                if (admitted <= 0) {
+                    return 0;
+                }
+                if (total.compareAndSet(t, t + admitted)) {
+                    break;
+                }
+            }
+            count(bucket, admitted);
+            return admitted;
+        }
+
+        // nanos until this stripe admits again: its oldest buckets expire one per bucket boundary
+        long nanosToNextPermit(long bucket, long now) {
+            advance(bucket);
+            long t = total.get();
+            for (long b = bucket - numberOfBuckets + 1; t >= maxRequests && b <= bucket; b++) {
+                long slot = slots.get((int) (b % numberOfBuckets));
+                if ((slot >>> COUNT_BITS) == b) {
+                    t -= slot & COUNT_MASK;
+                }
+                if (t < maxRequests) {
+                    return (b + numberOfBuckets) * bucketNanos - now;
+                }
+            }
+            return 0;
+        }
+
+        // expire the slots of the buckets that just left the window, done once by the thread that moves head
+        private void advance(long bucket) {
+            long h = head.get();
+            if (bucket <= h || !head.compareAndSet(h, bucket)) {
+                return;
+            }
+            for (long b = Math.max(h + 1, bucket - numberOfBuckets + 1); b <= bucket; b++) {
+                rotate((int) (b % numberOfBuckets), b);
+            }
+        }
+
+        private void rotate(int idx, long bucket) {
+            while (true) {
+                long slot = slots.get(idx);
+                if ((slot >>> COUNT_BITS) >= bucket) {
+                    return;
+                }
+                if (slots.compareAndSet(idx, slot, bucket << COUNT_BITS)) {
+                    total.addAndGet(-(slot & COUNT_MASK));
+                    return;
+                }
+            }
+        }
+
+        private void count(long bucket, int admitted) {
+            int idx = (int) (bucket % numberOfBuckets);
+            rotate(idx, bucket); // no-op unless this thread got here before the head sweep did
+            slots.addAndGet(idx, admitted); // a late thread whose bucket was already rotated past counts in the newer one
+        }
+    }
+
+    public ConcurrentSlidingWindowCounterRateLimiter(int maxRequests, int windowSizeInMillis, int numberOfBuckets) {
+        this(maxRequests, windowSizeInMillis, numberOfBuckets, 1);
+    }
+
+    public ConcurrentSlidingWindowCounterRateLimiter(int maxRequests, int windowSizeInMillis, int numberOfBuckets, int stripeCount) {
+        this(maxRequests, windowSizeInMillis, numberOfBuckets, stripeCount, Clock.system());
+    }
+
+    public ConcurrentSlidingWindowCounterRateLimiter(int maxRequests, int windowSizeInMillis, int numberOfBuckets, int stripeCount, Clock clock) {
+        if (maxRequests <= 0 || maxRequests > COUNT_MASK || numberOfBuckets <= 0 || stripeCount <= 0 || windowSizeInMillis < numberOfBuckets) {
+            throw new IllegalArgumentException("Invalid limiter parameters");
+        }
+        this.bucketNanos = windowSizeInMillis * 1_000_000L / numberOfBuckets;
+        this.numberOfBuckets = numberOfBuckets;
+        this.stripes = new Window[stripeCount];
+        this.clock = clock;
+        // starting at bucket numberOfBuckets keeps every slot epoch non-negative, the packing needs that
+        this.origin = clock.nanoTime() - numberOfBuckets * bucketNanos;
+        long bucket = numberOfBuckets;
+        for (int i = 0; i < stripeCount; i++) {
+            // spread the remainder so the stripe quotas add up to maxRequests exactly
+            stripes[i] = new Window(maxRequests / stripeCount + (i < maxRequests % stripeCount ? 1 : 0), bucket);
+        }
+    }
+
+    @Override
+    public boolean allowRequest() {
+        return allowBatch(1) == 1;
+    }
+
+    @Override
+    public int allowBatch(int requested) {
+        if (requested < 0) {
+            throw new IllegalArgumentException("Requested count must not be negative");
+        }
+        long bucket = (clock.nanoTime() - origin) / bucketNanos;
+        int first = stripes.length == 1 ? 0 : (int) (Thread.currentThread().getId() % stripes.length);
+        int admitted = 0;
+        for (int i = 0; i < stripes.length && admitted < requested; i++) {
+            admitted += stripes[(first + i) % stripes.length].tryAcquire(bucket, requested - admitted);
+        }
+        return admitted;
+    }
+
+    /** Requests counted in the current window, over all stripes. */
+    public long getRequestCount() {
+        long bucket = (clock.nanoTime() - origin) / bucketNanos;
+        long count = 0;
+        for (Window w : stripes) {
+            w.advance(bucket);
+            count += w.total.get();
+        }
+        return count;
+    }
+
+    @Override
+    public double availablePermits() {
+        long bucket = (clock.nanoTime() - origin) / bucketNanos;
+        long available = 0;
+        for (Window w : stripes) {
+            w.advance(bucket);
+            available += Math.max(0, w.maxRequests - w.total.get());
+        }
+        return available;
+    }
+
+    /** Earliest time any stripe admits again, a thread whose own stripe is exhausted falls back to the others. */
+    @Override
+    public long nanosToNextPermit() {
+        long now = clock.nanoTime() - origin;
+        long bucket = now / bucketNanos;
+        long nanos = Long.MAX_VALUE;
+        for (Window w : stripes) {
+            nanos = Math.min(nanos, w.nanosToNextPermit(bucket, now));
+        }
+        return nanos;
+    }
+
+    public static void main(String[] args) {
+        ConcurrentSlidingWindowCounterRateLimiter limiter = new ConcurrentSlidingWindowCounterRateLimiter(10, 10000, 5); // 10 req / 10s, 5 buckets
+        for (int i = 0; i < 15; i++) {
+            System.out.print(limiter.allowRequest() + " ");
+        }
+        System.out.println("\ncounted " + limiter.getRequestCount() + " (rejected requests are not charged)");
+
+        // throughput against the synchronized version under contention: SingleLimiterBenchmark in benchmarks/
+    }
+}
+
+/*
+Pros:
+O(1) per decision and no lock: the total is maintained incrementally instead of summing every bucket.
+Rejected requests do not eat into the quota, so a client retrying while limited recovers as the window slides.
+Stripes split the contended counters when one limiter is shared by many cores.
+
+Cons:
+Same approximation as the bucketed sliding window counter: a whole bucket expires at once.
+A request racing with a bucket rotation may be counted in the next bucket (never lost, at worst counted a bit late).
+ */
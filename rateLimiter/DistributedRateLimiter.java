@@ -0,0 +1,218 @@
+package rateLimiter;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One replica's view of a limit shared by many replicas.
+ *
+ * The global limit is a token bucket in a QuotaStore. Instead of asking the store for every request, the replica
+ * takes permits from it in leases and hands them out locally: the hot path is one CAS on a local counter, only a
+ * replica whose lease ran out goes to the store (one thread at a time, the others keep deciding locally).
+ *
+ * Lease size follows local demand: the request rate seen between renewals (smoothed, rejected requests included)
+ * times the target renewal interval, capped at maxLease so a replica cannot hoard the global burst. Unused permits
+ * expire with the lease (leaseTtlMillis) rather than being kept forever. When the store grants less than needed, the
+ * replica rejects locally for the time the global bucket needs to refill one lease instead of hammering the store.
+ */
+public class DistributedRateLimiter implements RateLimiter {
+    private static final long TARGET_RENEWAL_NANOS = 100_000_000L; // aim for about one store call per 100ms
+    private static final double DEMAND_SMOOTHING = 0.5;            // weight of the newest demand sample
+
+    private final QuotaStore store;
+    private final String key;
+    private final int capacity;
+    private final int refillRatePerSecond;
+    private final int maxLease;
+    private final long leaseTtlNanos;
+    private final long nanosPerToken;
+
+    private final Clock clock;
+
+    private final AtomicLong localPermits = new AtomicLong(); // left in the current lease
+    private final LongAdder requestedSinceRenewal = new LongAdder(); // demand, striped so it does not contend
+    private volatile long leaseExpiresAt;
+    private volatile long denyUntil;      // store was empty, do not ask before this
+
+    // renewal state, guarded by this
+    private int leaseSize = 1;
+    private long lastRenewalAt;
+    private double demandPerNano;  // smoothed local request rate
+
+    private final AtomicLong storeCalls = new AtomicLong();
+
+    public DistributedRateLimiter(QuotaStore store, String key, int capacity, int refillRatePerSecond) {
+        this(store, key, capacity, refillRatePerSecond, Math.max(1, capacity / 10), 1000);
+    }
+
+    public DistributedRateLimiter(QuotaStore store, String key, int capacity, int refillRatePerSecond, int maxLease, long leaseTtlMillis) {
+        this(store, key, capacity, refillRatePerSecond, maxLease, leaseTtlMillis, Clock.system());
+    }
+
+    public DistributedRateLimiter(QuotaStore store, String key, int capacity, int refillRatePerSecond, int maxLease,
+                                  long leaseTtlMillis, Clock clock) {
+        if (capacity <= 0 || refillRatePerSecond <= 0 || maxLease <= 0 || maxLease > capacity || leaseTtlMillis <= 0) {
+            throw new IllegalArgumentException("Invalid limiter parameters");
+        }
+        this.store = store;
+        this.key = key;
+        this.capacity = capacity;
+        this.refillRatePerSecond = refillRatePerSecond;
+        this.maxLease = maxLease;
+        this.leaseTtlNanos = leaseTtlMillis * 1_000_000L;
+        this.nanosPerToken = Math.max(1, Math.round(1_000_000_000.0 / refillRatePerSecond));
+        this.clock = clock;
+        long now = clock.nanoTime();
+        this.leaseExpiresAt = now;
+        this.denyUntil = now;
+        this.lastRenewalAt = now;
+    }
+
+    @Override
+    public boolean allowRequest() {
+        return allowBatch(1) == 1;
+    }
+
+    @Override
+    public int allowBatch(int requested) {
+        if (requested < 0) {
+            throw new IllegalArgumentException("Requested count must not be negative");
+        }
+        requestedSinceRenewal.add(requested);
+        int admitted = takeLocal(requested);
+        if (admitted < requested && clock.nanoTime() - denyUntil >= 0) {
+            admitted += renewAndTake(requested - admitted);
+        }
+        return admitted;
+    }
+
+    // lock-free hot path: take from the current lease
+    private int takeLocal(int requested) {
+        if (requested == 0 || clock.nanoTime() - leaseExpiresAt >= 0) {
+            return 0;
+        }
+        while (true) {
+            long left = localPermits.get();
+            int taken = (int) Math.min(requested, left);
+            if (taken == 0 || localPermits.compareAndSet(left, left - taken)) {
+                return taken;
+            }
+        }
+    }
+
+    private synchronized int renewAndTake(int requested) {
+        int admitted = takeLocal(requested); // another thread may have renewed while this one waited
+        if (admitted == requested) {
+            return admitted;
+        }
+        long now = clock.nanoTime();
+        if (now - denyUntil < 0) {
+            return admitted;
+        }
+
+        long elapsed = Math.max(1, now - lastRenewalAt);
+        double sample = (double) requestedSinceRenewal.sumThenReset() / elapsed;
+        demandPerNano = DEMAND_SMOOTHING * sample + (1 - DEMAND_SMOOTHING) * demandPerNano;
+        leaseSize = (int) Math.max(1, Math.min(maxLease, Math.ceil(demandPerNano * TARGET_RENEWAL_NANOS)));
+
+        int missing = requested - admitted;
+        int granted;
+        try {
+            storeCalls.incrementAndGet();
+            granted = store.take(key, Math.min(capacity, Math.max(leaseSize, missing)), capacity, refillRatePerSecond);
+        } catch (IOException e) {
+            granted = 0; // store unreachable: fail closed until the next renewal attempt
+        }
+
+        // whatever was left is either nothing or an expired lease, the new lease replaces it
+        int grantedNow = Math.min(granted, missing);
+        lastRenewalAt = now;
+        localPermits.set(granted - grantedNow);
+        leaseExpiresAt = now + leaseTtlNanos;
+        if (granted < missing) {
+            denyUntil = now + Math.min(TARGET_RENEWAL_NANOS, leaseSize * nanosPerToken);
+        }
+        return admitted + grantedNow;
+    }
+
+    /** Permits left in the current lease; the global bucket may have more. */
+    @Override
+    public double availablePermits() {
+        return clock.nanoTime() - leaseExpiresAt >= 0 ? 0 : localPermits.get();
+    }
+
+    /** 0 while the lease has permits or the store may be asked again, otherwise the remaining back off. */
+    @Override
+    public long nanosToNextPermit() {
+        return availablePermits() > 0 ? 0 : Math.max(0, denyUntil - clock.nanoTime());
+    }
+
+    public synchronized int getLeaseSize() {
+        return leaseSize;
+    }
+
+    public long getStoreCalls() {
+        return storeCalls.get();
+    }
+
+    public static void main(String[] args) throws Exception {
+        // global limit: burst 1000, 2000 req/s, shared by 4 replicas through a TCP quota store
+        try (TcpQuotaStore.Server server = new TcpQuotaStore.Server(0, new InMemoryQuotaStore())) {
+            int replicas = 4;
+            DistributedRateLimiter[] limiters = new DistributedRateLimiter[replicas];
+            TcpQuotaStore[] clients = new TcpQuotaStore[replicas];
+            for (int i = 0; i < replicas; i++) {
+                clients[i] = new TcpQuotaStore("localhost", server.getPort());
+                limiters[i] = new DistributedRateLimiter(clients[i], "api", 1000, 2000);
+            }
+
+            // replica 0 gets most of the traffic and leases the most, the quiet ones lease little
+            AtomicLong admitted = new AtomicLong();
+            AtomicLong decisions = new AtomicLong();
+            long durationNanos = 1_000_000_000L;
+            CountDownLatch done = new CountDownLatch(replicas);
+            long start = System.nanoTime();
+            for (int i = 0; i < replicas; i++) {
+                DistributedRateLimiter limiter = limiters[i];
+                long pauseNanos = i == 0 ? 0 : 5_000_000; // others see about 200 attempts/sec
+                new Thread(() -> {
+                    long ok = 0, n = 0;
+                    while (System.nanoTime() - start < durationNanos) {
+                        if (limiter.allowRequest()) {
+                            ok++;
+                        }
+                        n++;
+                        if (pauseNanos > 0) {
+                            LockSupport.parkNanos(pauseNanos);
+                        }
+                    }
+                    admitted.addAndGet(ok);
+                    decisions.addAndGet(n);
+                    done.countDown();
+                }).start();
+            }
+            done.await();
+
+            System.out.printf("%,d decisions, %,d admitted (global limit allows ~3,000 in 1s)%n", decisions.get(), admitted.get());
+            for (int i = 0; i < replicas; i++) {
+                System.out.printf("replica %d: lease size %d, %d store calls%n", i, limiters[i].getLeaseSize(), limiters[i].getStoreCalls());
+                clients[i].close();
+            }
+        }
+    }
+}
+
+/*
+Pros:
+The hot path never leaves the process: one CAS per decision, one store round trip per lease.
+Leases follow demand, so a busy replica renews about every 100ms whatever its rate and quiet replicas hold little.
+The store is pluggable (in-memory, TCP, or a real shared store behind the same interface).
+
+Cons:
+Permits leased but not used before the lease expires are lost, so the global limit is slightly under-used.
+Leased permits are spent later than the store counted them, so bursts shift by up to one lease (bounded by maxLease).
+If the store is unreachable the replica fails closed once its lease is spent.
+ */
@@ -1,22 +1,29 @@
 package rateLimiter;
 
-public class FixedWindowRateLimiter {
+public class FixedWindowRateLimiter implements RateLimiter {
     private final int maxRequests;
-    private final long windowSizeInMillis;
+    private final long windowNanos;
+    private final Clock clock;
     private int requestCount;
-    private long windowStart;
+    private long windowStart;        // clock nanos
 
     public FixedWindowRateLimiter(int maxRequests, long windowSizeInMillis) {
+        this(maxRequests, windowSizeInMillis, Clock.system());
+    }
+
+    public FixedWindowRateLimiter(int maxRequests, long windowSizeInMillis, Clock clock) {
         this.maxRequests = maxRequests;
-        this.windowSizeInMillis = windowSizeInMillis;
+        this.windowNanos = windowSizeInMillis * 1_000_000L;
+        this.clock = clock;
         this.requestCount = 0;
-        this.windowStart = System.currentTimeMillis();
+        this.windowStart = clock.nanoTime();
     }
 
+    @Override
     public synchronized boolean allowRequest() {
-        long now = System.currentTimeMillis();
+        long now = clock.nanoTime();
 
-        if (now - windowStart >= windowSizeInMillis) {
+        if (now - windowStart >= windowNanos) {
             // reset the window
             windowStart = now;
             
@@ -31,6 +38,40 @@ public class FixedWindowRateLimiter {
         }
     }
 
+    @Override
+    public synchronized int allowBatch(int requested) {
+        if (requested < 0) {
+            throw new IllegalArgumentException("Requested count must not be negative");
+        }
+        long now = clock.nanoTime();
+        if (now - windowStart >= windowNanos) {
+            windowStart = now;
+            requestCount = 0;
+        }
+
+        int admitted = Math.min(requested, maxRequests - requestCount);
+        requestCount += admitted;
+        return admitted;
+    }
+
+    @Override
+    public synchronized double availablePermits() {
+        long now = clock.nanoTime();
+        return now - windowStart >= windowNanos ? maxRequests : Math.max(0, maxRequests - requestCount);
+    }
+
+    @Override
+    public synchronized long nanosToNextPermit() {
+        if (maxRequests <= 0) {
+            return Long.MAX_VALUE;
+        }
+        long now = clock.nanoTime();
+        if (requestCount < maxRequests || now - windowStart >= windowNanos) {
+            return 0;
+        }
+        return windowStart + windowNanos - now;
+    }
+
     public static void main(String[] args) throws InterruptedException {
         FixedWindowRateLimiter limiter = new FixedWindowRateLimiter(5, 10000); // 5 requests / 10 seconds
 
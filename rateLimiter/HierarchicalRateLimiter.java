@@ -0,0 +1,150 @@
+package rateLimiter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per user, per tenant and global limits enforced together, e.g. 100/s per user, 10k/s per tenant, 1M/s overall.
+ *
+ * Every level is an AtomicTokenBucketRateLimiter. A request is charged optimistically level by level, narrowest
+ * first (user, tenant, global), each with one CAS. If a level rejects, the levels already charged are refunded with
+ * one atomic add each, so nothing is charged twice and no lock is taken: on the admit path the hierarchy costs three
+ * CAS instead of one, a request rejected by its user limit never touches the shared tenant and global buckets.
+ * Batches take the minimum over the levels and refund the difference.
+ *
+ * Buckets are created on first use. A full bucket is the same as a fresh one, so evictIdle() drops them.
+ */
+public class HierarchicalRateLimiter {
+    private final int userCapacity;
+    private final int userRate;
+    private final int tenantCapacity;
+    private final int tenantRate;
+    private final AtomicTokenBucketRateLimiter global;
+    private final Clock clock;
+    private final ConcurrentMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+
+    private static final class Tenant {
+        final AtomicTokenBucketRateLimiter bucket;
+        final ConcurrentMap<String, AtomicTokenBucketRateLimiter> users = new ConcurrentHashMap<>();
+
+        Tenant(AtomicTokenBucketRateLimiter bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    public HierarchicalRateLimiter(int userCapacity, int userRatePerSecond,
+                                   int tenantCapacity, int tenantRatePerSecond,
+                                   int globalCapacity, int globalRatePerSecond) {
+        this(userCapacity, userRatePerSecond, tenantCapacity, tenantRatePerSecond, globalCapacity, globalRatePerSecond, Clock.system());
+    }
+
+    public HierarchicalRateLimiter(int userCapacity, int userRatePerSecond,
+                                   int tenantCapacity, int tenantRatePerSecond,
+                                   int globalCapacity, int globalRatePerSecond, Clock clock) {
+        if (userCapacity <= 0 || userRatePerSecond <= 0 || tenantCapacity <= 0 || tenantRatePerSecond <= 0) {
+            throw new IllegalArgumentException("Capacity and refill rate must be positive");
+        }
+        this.userCapacity = userCapacity;
+        this.userRate = userRatePerSecond;
+        this.tenantCapacity = tenantCapacity;
+        this.tenantRate = tenantRatePerSecond;
+        this.clock = clock;
+        this.global = new AtomicTokenBucketRateLimiter(globalCapacity, globalRatePerSecond, clock);
+    }
+
+    public boolean allowRequest(String tenantId, String userId) {
+        return tryAcquire(tenantId, userId, 1);
+    }
+
+    /** All or nothing: permits are taken from every level or from none. */
+    public boolean tryAcquire(String tenantId, String userId, int permits) {
+        Tenant tenant = tenant(tenantId);
+        AtomicTokenBucketRateLimiter user = user(tenant, userId);
+        if (!user.tryAcquire(permits)) {
+            return false;
+        }
+        if (!tenant.bucket.tryAcquire(permits)) {
+            user.refund(permits);
+            return false;
+        }
+        if (!global.tryAcquire(permits)) {
+            tenant.bucket.refund(permits);
+            user.refund(permits);
+            return false;
+        }
+        return true;
+    }
+
+    /** As many of the requested permits as every level allows; returns how many. */
+    public int allowBatch(String tenantId, String userId, int requested) {
+        Tenant tenant = tenant(tenantId);
+        AtomicTokenBucketRateLimiter user = user(tenant, userId);
+        int byUser = user.allowBatch(requested);
+        if (byUser == 0) {
+            return 0;
+        }
+        int byTenant = tenant.bucket.allowBatch(byUser);
+        int admitted = byTenant == 0 ? 0 : global.allowBatch(byTenant);
+        tenant.bucket.refund(byTenant - admitted);
+        user.refund(byUser - admitted);
+        return admitted;
+    }
+
+    /** Drops the buckets of idle users and tenants (full buckets), returns how many were removed. */
+    public int evictIdle() {
+        int removed = 0;
+        for (var t : tenants.entrySet()) {
+            Tenant tenant = t.getValue();
+            for (var u : tenant.users.entrySet()) {
+                if (u.getValue().getTokens() >= userCapacity && tenant.users.remove(u.getKey(), u.getValue())) {
+                    removed++;
+                }
+            }
+            if (tenant.users.isEmpty() && tenant.bucket.getTokens() >= tenantCapacity && tenants.remove(t.getKey(), tenant)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private Tenant tenant(String tenantId) {
+        Tenant tenant = tenants.get(tenantId); // get first, computeIfAbsent locks the bin even on a hit
+        return tenant != null ? tenant
+            : tenants.computeIfAbsent(tenantId, k -> new Tenant(new AtomicTokenBucketRateLimiter(tenantCapacity, tenantRate, clock)));
+    }
+
+    private AtomicTokenBucketRateLimiter user(Tenant tenant, String userId) {
+        AtomicTokenBucketRateLimiter user = tenant.users.get(userId);
+        return user != null ? user
+            : tenant.users.computeIfAbsent(userId, k -> new AtomicTokenBucketRateLimiter(userCapacity, userRate, clock));
+    }
+
+    public static void main(String[] args) {
+        // 5 per user, 12 per tenant, 20 overall (burst, slow refill so the demo is deterministic)
+        HierarchicalRateLimiter limiter = new HierarchicalRateLimiter(5, 1, 12, 1, 20, 1);
+        System.out.println("alice (acme) 7 requests, user limit 5:");
+        for (int i = 0; i < 7; i++) {
+            System.out.print(limiter.allowRequest("acme", "alice") + " ");
+        }
+        System.out.println("\nbob and carol (acme), tenant limit 12 leaves 7:");
+        System.out.println("bob batch of 5: " + limiter.allowBatch("acme", "bob", 5));
+        System.out.println("carol batch of 5: " + limiter.allowBatch("acme", "carol", 5) + " (tenant ran out, the unused user permits were refunded)");
+        System.out.println("dave (globex) batch of 5: " + limiter.allowBatch("globex", "dave", 5));
+        System.out.println("erin (globex) batch of 5: " + limiter.allowBatch("globex", "erin", 5) + " (global limit 20)");
+        System.out.printf("global tokens left %.0f, nothing charged for the rejected requests%n", limiter.global.getTokens());
+
+        // throughput of the three levels against a single bucket: HierarchicalLimiterBenchmark in benchmarks/
+    }
+}
+
+/*
+Pros:
+One call checks every level, partial rejections are rolled back, so no level is ever charged for a rejected request.
+Lock-free: a CAS per level to admit, an atomic add per level to roll back.
+Narrowest level first, so abusive users are turned away without contending on the shared tenant and global buckets.
+
+Cons:
+Not a single atomic snapshot: between a charge and its refund another request may see the level a few tokens lower
+and be rejected (never over-admitted).
+A request racing with evictIdle() may charge a bucket that was just dropped, giving that user up to one request more.
+ */
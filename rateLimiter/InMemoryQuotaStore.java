@@ -0,0 +1,15 @@
+package rateLimiter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/** Reference QuotaStore: one lock-free AtomicTokenBucketRateLimiter per key in this process. */
+public class InMemoryQuotaStore implements QuotaStore {
+    private final ConcurrentMap<String, AtomicTokenBucketRateLimiter> buckets = new ConcurrentHashMap<>();
+
+    @Override
+    public int take(String key, int requested, int capacity, int refillRatePerSecond) {
+        return buckets.computeIfAbsent(key, k -> new AtomicTokenBucketRateLimiter(capacity, refillRatePerSecond))
+            .allowBatch(requested);
+    }
+}
@@ -0,0 +1,80 @@
+package rateLimiter;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Wraps a KeyedRateLimiter: allowed / rejected counters (LongAdder) and the keys rejected most often (TopOffenders).
+ * Only rejections touch the offender sketch, the admit path costs one counter increment.
+ */
+public class InstrumentedKeyedRateLimiter<K> {
+    private final KeyedRateLimiter<K> delegate;
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final TopOffenders<K> offenders;
+
+    public InstrumentedKeyedRateLimiter(KeyedRateLimiter<K> delegate) {
+        this(delegate, new TopOffenders<>(32, 16));
+    }
+
+    public InstrumentedKeyedRateLimiter(KeyedRateLimiter<K> delegate, TopOffenders<K> offenders) {
+        this.delegate = delegate;
+        this.offenders = offenders;
+    }
+
+    public boolean allowRequest(K key) {
+        if (delegate.allowRequest(key)) {
+            allowed.increment();
+            return true;
+        }
+        rejected.increment();
+        offenders.record(key);
+        return false;
+    }
+
+    public boolean[] allow(K[] keys) {
+        boolean[] result = delegate.allow(keys);
+        int admitted = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (result[i]) {
+                admitted++;
+            } else {
+                offenders.record(keys[i]);
+            }
+        }
+        allowed.add(admitted);
+        rejected.add(keys.length - admitted);
+        return result;
+    }
+
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /** The n keys rejected most often since creation, highest first. */
+    public List<TopOffenders.Entry<K>> topOffenders(int n) {
+        return offenders.top(n);
+    }
+
+    public int size() {
+        return delegate.size();
+    }
+
+    public static void main(String[] args) {
+        InstrumentedKeyedRateLimiter<String> limiter =
+            new InstrumentedKeyedRateLimiter<>(new KeyedRateLimiter<>(KeyedRateLimiter.tokenBucket(20, 10), 16, 60_000));
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            // two clients hammering, the rest well behaved
+            String client = i % 4 == 0 ? "scraper-a" : i % 9 == 0 ? "scraper-b" : "user-" + random.nextInt(50_000);
+            limiter.allowRequest(client);
+        }
+        System.out.printf("allowed %,d rejected %,d, top offenders %s%n",
+            limiter.getAllowed(), limiter.getRejected(), limiter.topOffenders(3));
+    }
+}
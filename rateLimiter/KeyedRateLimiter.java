@@ -0,0 +1,464 @@
+package rateLimiter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One rate limit per key (API key, client IP, ...) for millions of keys.
+ *
+ * Keys are spread over independently locked stripes by hash. Each stripe is an open-addressing table: a key array
+ * plus one long[] holding every bucket's state inline (stride = algorithm words + 1 last-access word), so a bucket
+ * costs a few longs instead of a limiter object, its fields and a map entry.
+ *
+ * Idle buckets are dropped lazily: when a stripe fills up it is rebuilt without the buckets untouched for longer
+ * than the TTL, and only grows if the live ones still do not fit. The TTL is never shorter than the time an idle
+ * bucket needs to return to its initial state, so evicting one never changes a decision.
+ */
+public class KeyedRateLimiter<K> {
+    /**
+     * A rate limiting algorithm over a slice of a long[] (state[offset .. offset + stateWords() - 1]).
+     * Times are nanoseconds since the limiter was created.
+     */
+    public interface Algorithm {
+        int stateWords();
+
+        void init(long[] state, int offset, long now);
+
+        boolean allow(long[] state, int offset, long now);
+
+        /** How many of requested back to back requests are admitted, same as calling allow() requested times. */
+        default int allowBatch(long[] state, int offset, long now, int requested) {
+            int admitted = 0;
+            while (admitted < requested && allow(state, offset, now)) {
+                admitted++;
+            }
+            return admitted;
+        }
+
+        /** Idle time after which the state is equivalent to a freshly initialised one. */
+        long resetNanos();
+    }
+
+    private static final int INITIAL_STRIPE_CAPACITY = 16; // power of two
+
+    private final Algorithm algorithm;
+    private final Stripe[] stripes;
+    private final int stride;
+    private final long ttlNanos;
+    private final Clock clock;
+    private final long origin; // clock nanos at construction, the algorithms see time relative to it (never negative)
+
+    public KeyedRateLimiter(Algorithm algorithm, int stripeCount, long idleTtlMillis) {
+        this(algorithm, stripeCount, idleTtlMillis, Clock.system());
+    }
+
+    public KeyedRateLimiter(Algorithm algorithm, int stripeCount, long idleTtlMillis, Clock clock) {
+        if (stripeCount <= 0 || Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two");
+        }
+        this.algorithm = algorithm;
+        this.stride = algorithm.stateWords() + 1;
+        this.ttlNanos = Math.max(idleTtlMillis * 1_000_000L, algorithm.resetNanos());
+        this.clock = clock;
+        this.origin = clock.nanoTime();
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(stride);
+        }
+    }
+
+    public boolean allowRequest(K key) {
+        int h = spread(key.hashCode());
+        Stripe stripe = stripes[h & (stripes.length - 1)];
+        synchronized (stripe) {
+            long now = clock.nanoTime() - origin;
+            int base = slotFor(stripe, key, h, now);
+            stripe.state[base] = now;
+            return algorithm.allow(stripe.state, base + 1, now);
+        }
+    }
+
+    /**
+     * Decides a whole batch of events. Events are grouped by stripe and by key, each stripe is locked once and each
+     * distinct key's bucket is charged once for all of its events; the first admitted-many events of a key (in batch
+     * order) are the ones allowed.
+     */
+    public boolean[] allow(K[] keys) {
+        boolean[] result = new boolean[keys.length];
+        int[] stripeOf = new int[keys.length];
+        int[] hashes = new int[keys.length];
+        int[] counts = new int[stripes.length];
+        for (int i = 0; i < keys.length; i++) {
+            hashes[i] = spread(keys[i].hashCode());
+            stripeOf[i] = hashes[i] & (stripes.length - 1);
+            counts[stripeOf[i]]++;
+        }
+        // counting sort of the event indexes by stripe
+        int[] start = new int[stripes.length + 1];
+        for (int s = 0; s < stripes.length; s++) {
+            start[s + 1] = start[s] + counts[s];
+        }
+        int[] byStripe = new int[keys.length];
+        int[] fill = Arrays.copyOf(start, stripes.length);
+        for (int i = 0; i < keys.length; i++) {
+            byStripe[fill[stripeOf[i]]++] = i;
+        }
+
+        Map<K, int[]> perKey = new HashMap<>(); // key -> {events, admitted}
+        for (int s = 0; s < stripes.length; s++) {
+            if (start[s] == start[s + 1]) continue;
+            perKey.clear();
+            for (int j = start[s]; j < start[s + 1]; j++) {
+                perKey.computeIfAbsent(keys[byStripe[j]], k -> new int[2])[0]++;
+            }
+
+            Stripe stripe = stripes[s];
+            synchronized (stripe) {
+                long now = clock.nanoTime() - origin;
+                for (Map.Entry<K, int[]> e : perKey.entrySet()) {
+                    int base = slotFor(stripe, e.getKey(), spread(e.getKey().hashCode()), now);
+                    stripe.state[base] = now;
+                    e.getValue()[1] = algorithm.allowBatch(stripe.state, base + 1, now, e.getValue()[0]);
+                }
+            }
+
+            for (int j = start[s]; j < start[s + 1]; j++) {
+                int i = byStripe[j];
+                int[] c = perKey.get(keys[i]);
+                if (c[1] > 0) { // byStripe keeps batch order within a stripe
+                    result[i] = true;
+                    c[1]--;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Number of buckets currently held, including idle ones not evicted yet. */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    // stripe index from the low bits, table slot from the high bits, so the two are independent
+    private static int spread(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Stripe {
+        Object[] keys = new Object[INITIAL_STRIPE_CAPACITY];
+        long[] state; // [lastAccess, algorithm words...] per slot
+        int size;
+
+        Stripe(int stride) {
+            state = new long[INITIAL_STRIPE_CAPACITY * stride];
+        }
+    }
+
+    // index of the key's lastAccess word, inserting a fresh bucket if the key is new
+    private int slotFor(Stripe stripe, Object key, int h, long now) {
+        Object[] keys = stripe.keys;
+        int mask = keys.length - 1;
+        int i = (h >>> 8) & mask;
+        while (keys[i] != null) {
+            if (keys[i].equals(key)) {
+                return i * stride;
+            }
+            i = (i + 1) & mask;
+        }
+
+        if ((stripe.size + 1) * 2 > keys.length) { // keep the load factor under 1/2
+            rebuild(stripe, now);
+            return slotFor(stripe, key, h, now);
+        }
+        keys[i] = key;
+        stripe.size++;
+        algorithm.init(stripe.state, i * stride + 1, now);
+        return i * stride;
+    }
+
+    private void rebuild(Stripe stripe, long now) {
+        Object[] oldKeys = stripe.keys;
+        long[] oldState = stripe.state;
+        int live = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null && now - oldState[i * stride] < ttlNanos) live++;
+        }
+        // grows if the live buckets still fill more than a quarter, shrinks back once idle ones are gone
+        int capacity = INITIAL_STRIPE_CAPACITY;
+        while (capacity < (live + 1) * 4) {
+            capacity <<= 1;
+        }
+
+        Object[] keys = new Object[capacity];
+        long[] state = new long[capacity * stride];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null || now - oldState[i * stride] >= ttlNanos) continue;
+            int j = (spread(oldKeys[i].hashCode()) >>> 8) & mask;
+            while (keys[j] != null) {
+                j = (j + 1) & mask;
+            }
+            keys[j] = oldKeys[i];
+            System.arraycopy(oldState, i * stride, state, j * stride, stride);
+        }
+        stripe.keys = keys;
+        stripe.state = state;
+        stripe.size = live;
+    }
+
+    /** Same decisions as TokenBucketRateLimiter, state is the GCRA "empty at" time of AtomicTokenBucketRateLimiter. */
+    public static Algorithm tokenBucket(int bucketCapacity, int refillRatePerSecond) {
+        long nanosPerToken = Math.max(1, Math.round(1_000_000_000.0 / refillRatePerSecond));
+        long burstNanos = bucketCapacity * nanosPerToken;
+        return new Algorithm() {
+            @Override
+            public int stateWords() {
+                return 1;
+            }
+
+            @Override
+            public void init(long[] state, int offset, long now) {
+                state[offset] = now - burstNanos; // starts full
+            }
+
+            @Override
+            public boolean allow(long[] state, int offset, long now) {
+                long base = Math.max(state[offset], now - burstNanos);
+                if (now - base < nanosPerToken) {
+                    return false;
+                }
+                state[offset] = base + nanosPerToken;
+                return true;
+            }
+
+            @Override
+            public int allowBatch(long[] state, int offset, long now, int requested) {
+                long base = Math.max(state[offset], now - burstNanos);
+                int admitted = (int) Math.min(requested, (now - base) / nanosPerToken);
+                state[offset] = base + admitted * nanosPerToken;
+                return admitted;
+            }
+
+            @Override
+            public long resetNanos() {
+                return burstNanos;
+            }
+        };
+    }
+
+    /**
+     * LeakyBucketRateLimiter's water level, state is the time the bucket drains to empty. A request is admitted
+     * only if its whole drop still fits below the capacity.
+     */
+    public static Algorithm leakyBucket(int capacity, int leakRatePerSecond) {
+        long nanosPerDrop = Math.max(1, Math.round(1_000_000_000.0 / leakRatePerSecond));
+        long fullNanos = capacity * nanosPerDrop;
+        return new Algorithm() {
+            @Override
+            public int stateWords() {
+                return 1;
+            }
+
+            @Override
+            public void init(long[] state, int offset, long now) {
+                state[offset] = now; // empty
+            }
+
+            @Override
+            public boolean allow(long[] state, int offset, long now) {
+                long drainedAt = Math.max(state[offset], now);
+                if (drainedAt + nanosPerDrop - now > fullNanos) {
+                    return false; // bucket full
+                }
+                state[offset] = drainedAt + nanosPerDrop;
+                return true;
+            }
+
+            @Override
+            public int allowBatch(long[] state, int offset, long now, int requested) {
+                long drainedAt = Math.max(state[offset], now);
+                int admitted = (int) Math.max(0, Math.min(requested, (fullNanos - (drainedAt - now)) / nanosPerDrop));
+                state[offset] = drainedAt + admitted * nanosPerDrop;
+                return admitted;
+            }
+
+            @Override
+            public long resetNanos() {
+                return fullNanos;
+            }
+        };
+    }
+
+    /** Same decisions as FixedWindowRateLimiter, state is [windowStart, requestCount]. */
+    public static Algorithm fixedWindow(int maxRequests, long windowSizeInMillis) {
+        long windowNanos = windowSizeInMillis * 1_000_000L;
+        return new Algorithm() {
+            @Override
+            public int stateWords() {
+                return 2;
+            }
+
+            @Override
+            public void init(long[] state, int offset, long now) {
+                state[offset] = now;
+                state[offset + 1] = 0;
+            }
+
+            @Override
+            public boolean allow(long[] state, int offset, long now) {
+                if (now - state[offset] >= windowNanos) {
+                    state[offset] = now;
+                    state[offset + 1] = 0;
+                }
+                if (state[offset + 1] < maxRequests) {
+                    state[offset + 1]++;
+                    return true;
+                }
+                return false; // limit reached
+            }
+
+            @Override
+            public int allowBatch(long[] state, int offset, long now, int requested) {
+                if (now - state[offset] >= windowNanos) {
+                    state[offset] = now;
+                    state[offset + 1] = 0;
+                }
+                int admitted = (int) Math.min(requested, maxRequests - state[offset + 1]);
+                state[offset + 1] += admitted;
+                return admitted;
+            }
+
+            @Override
+            public long resetNanos() {
+                return windowNanos;
+            }
+        };
+    }
+
+    /**
+     * Same decisions as SlidingWindowLogRateLimiter, state is [head, count, maxRequests timestamps] used as a ring
+     * buffer, so it suits small per-key limits only.
+     */
+    public static Algorithm slidingWindowLog(int maxRequests, long windowSizeInMillis) {
+        long windowNanos = windowSizeInMillis * 1_000_000L;
+        return new Algorithm() {
+            @Override
+            public int stateWords() {
+                return 2 + maxRequests;
+            }
+
+            @Override
+            public void init(long[] state, int offset, long now) {
+                Arrays.fill(state, offset, offset + 2 + maxRequests, 0);
+            }
+
+            @Override
+            public boolean allow(long[] state, int offset, long now) {
+                int head = (int) state[offset];
+                int count = (int) state[offset + 1];
+                // remove timestamps older than window
+                while (count > 0 && state[offset + 2 + head] <= now - windowNanos) {
+                    head = (head + 1) % maxRequests;
+                    count--;
+                }
+
+                boolean allowed = count < maxRequests;
+                if (allowed) {
+                    state[offset + 2 + (head + count) % maxRequests] = now;
+                    count++;
+                }
+                state[offset] = head;
+                state[offset + 1] = count;
+                return allowed;
+            }
+
+            @Override
+            public long resetNanos() {
+                return windowNanos;
+            }
+        };
+    }
+
+    /**
+     * SlidingWindowCounterRateLimiter's buckets, state is [last bucket number, numberOfBuckets counters].
+     * Unlike the single stream class a rejected request is not counted, so a client that keeps retrying while
+     * limited is let through again once its window slides.
+     */
+    public static Algorithm slidingWindowCounter(int maxRequests, int windowSizeInMillis, int numberOfBuckets) {
+        long bucketNanos = windowSizeInMillis * 1_000_000L / numberOfBuckets;
+        return new Algorithm() {
+            @Override
+            public int stateWords() {
+                return 1 + numberOfBuckets;
+            }
+
+            @Override
+            public void init(long[] state, int offset, long now) {
+                state[offset] = Math.floorDiv(now, bucketNanos);
+                Arrays.fill(state, offset + 1, offset + 1 + numberOfBuckets, 0);
+            }
+
+            @Override
+            public boolean allow(long[] state, int offset, long now) {
+                long bucket = Math.floorDiv(now, bucketNanos);
+                // reset the buckets time moved past
+                for (long b = state[offset] + 1; b <= bucket && b <= state[offset] + numberOfBuckets; b++) {
+                    state[offset + 1 + Math.floorMod(b, numberOfBuckets)] = 0;
+                }
+                state[offset] = Math.max(state[offset], bucket);
+
+                long total = 0;
+                for (int i = 0; i < numberOfBuckets; i++) {
+                    total += state[offset + 1 + i];
+                }
+                if (total >= maxRequests) {
+                    return false;
+                }
+                state[offset + 1 + Math.floorMod(bucket, numberOfBuckets)]++;
+                return true;
+            }
+
+            @Override
+            public long resetNanos() {
+                return bucketNanos * numberOfBuckets;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        KeyedRateLimiter<String> limiter = new KeyedRateLimiter<>(tokenBucket(3, 1), 16, 1000); // burst 3, 1 req/s per client
+        for (String client : new String[]{"alice", "alice", "alice", "alice", "bob"}) {
+            System.out.println(client + " -> " + limiter.allowRequest(client));
+        }
+
+        // a million distinct clients, then the same again after they went idle
+        KeyedRateLimiter<String> perIp = new KeyedRateLimiter<>(fixedWindow(10, 100), 64, 100);
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 1_000_000; i++) {
+                perIp.allowRequest("10." + (i >>> 16) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff) + "#" + round);
+            }
+            System.out.printf("round %d: 1M clients in %d ms, %,d buckets held%n", round, (System.nanoTime() - start) / 1_000_000, perIp.size());
+            Thread.sleep(200); // longer than TTL and window, every bucket is idle now
+        }
+    }
+}
+
+/*
+Pros:
+A token or leaky bucket costs 16 bytes of state plus a key reference, so millions of clients fit in a few tens of MB.
+Stripes keep unrelated clients from contending on one lock.
+Idle clients disappear without a background sweeper thread.
+
+Cons:
+Eviction only happens when a stripe needs room, so memory follows the peak number of recently active clients.
+Sliding window log keeps maxRequests timestamps per key, use it only for small per-key limits.
+ */
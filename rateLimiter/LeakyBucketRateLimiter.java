@@ -1,23 +1,32 @@
 package rateLimiter;
 
-import java.time.Duration;
-import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
-public class LeakyBucketRateLimiter {
+public class LeakyBucketRateLimiter implements RateLimiter {
     private double water;            // fractional water for precision
-    private Instant lastChecked;     // last leak timestamp
+    private long lastChecked;        // last leak timestamp, clock nanos
     private final int capacity;      // max bucket size
     private final double leakRate;   // tokens leaking per second
+    private int asyncWaiters;        // acquireAsync futures still on the timer wheel
+    private final Clock clock;
 
     public LeakyBucketRateLimiter(int capacity, int leakRatePerSecond) {
+        this(capacity, leakRatePerSecond, Clock.system());
+    }
+
+    public LeakyBucketRateLimiter(int capacity, int leakRatePerSecond, Clock clock) {
         this.capacity = capacity;
         this.leakRate = leakRatePerSecond;
         this.water = 0;
-        this.lastChecked = Instant.now();
+        this.clock = clock;
+        this.lastChecked = clock.nanoTime();
     }
 
+    @Override
     public synchronized boolean allowRequest() {
-        leak();
+        leak(clock.nanoTime());
         if (water < capacity) {
             water += 1; // add incoming request
             return true;
@@ -25,21 +34,111 @@ public class LeakyBucketRateLimiter {
         return false; // bucket full
     }
 
-    private void leak() {
-        Instant now = Instant.now();
-        long millis = Duration.between(lastChecked, now).toMillis();
-        if (millis <= 0) return;
+    @Override
+    public synchronized int allowBatch(int requested) {
+        if (requested < 0) {
+            throw new IllegalArgumentException("Requested count must not be negative");
+        }
+        leak(clock.nanoTime());
+        // each request goes in while the water is still below capacity
+        int admitted = (int) Math.max(0, Math.min(requested, Math.ceil(capacity - water)));
+        water += admitted;
+        return admitted;
+    }
+
+    /** Blocks (parks) until the request fits in the bucket. Waiters are served in arrival order. */
+    public void acquire(int permits) {
+        TokenBucketRateLimiter.parkUntil(clock.toSystemNanos(reserve(permits, clock.nanoTime())));
+    }
+
+    /**
+     * Completes once the request fits in the bucket, timed by the shared TimerWheel.
+     * The water is added immediately, cancelling the future does not take it back out.
+     * A granted-now future is completed by the caller; a waiting one is completed on the common ForkJoinPool,
+     * never on the wheel thread, so dependent stages (thenRun, ...) may do real work.
+     */
+    public CompletableFuture<Void> acquireAsync(int permits) {
+        return acquireAsync(permits, ForkJoinPool.commonPool());
+    }
+
+    /** As acquireAsync(permits), a waiting future is completed on executor. */
+    public CompletableFuture<Void> acquireAsync(int permits, Executor executor) {
+        CompletableFuture<Void> granted = new CompletableFuture<>();
+        synchronized (this) {
+            long now = clock.nanoTime();
+            long grantedAt = reserve(permits, now);
+            if (grantedAt == now && asyncWaiters == 0) {
+                granted.complete(null);
+            } else {
+                // a waiter whose timer has not fired yet goes first, even if the tokens are already there
+                asyncWaiters++;
+                TimerWheel.shared().scheduleAt(() -> {
+                    synchronized (this) {
+                        asyncWaiters--;
+                    }
+                    granted.completeAsync(() -> null, executor); // dependents must not run on the wheel thread
+                }, clock.toSystemNanos(grantedAt));
+            }
+        }
+        return granted;
+    }
+
+    /**
+     * Pours the request in now, letting the water rise above capacity, and returns the clock time at which the water
+     * in front of it has leaked enough for it to fit. Later reservations queue behind it (FIFO), and allowRequest()
+     * keeps failing while anyone is waiting.
+     * Same rule as allowRequest/allowBatch: each of the permits goes in while the water is strictly below capacity,
+     * so the last one needs water + permits - 1 < capacity.
+     */
+    private synchronized long reserve(int permits, long now) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Permits must be positive");
+        }
+        leak(now);
+        double overflow = water + permits - 1 - capacity;
+        water += permits;
+        return overflow < 0 ? now : now + (long) Math.floor(overflow / leakRate * 1_000_000_000L) + 1;
+    }
+
+    private void leak(long now) {
+        long nanos = now - lastChecked;
+        if (nanos <= 0) return;
 
-        double leaked = (millis / 1000.0) * leakRate;
+        double leaked = (nanos / 1_000_000_000.0) * leakRate;
         water = Math.max(0, water - leaked);
         lastChecked = now;
     }
 
     // Optional: get current water level
     public synchronized double getWaterLevel() {
-        leak();
+        leak(clock.nanoTime());
         return water;
     }
+
+    @Override
+    public synchronized double availablePermits() {
+        leak(clock.nanoTime());
+        return Math.max(0, capacity - water);
+    }
+
+    @Override
+    public synchronized long nanosToNextPermit() {
+        leak(clock.nanoTime());
+        // a request goes in while the water is strictly below capacity, i.e. just after it has leaked down to it
+        return water < capacity ? 0 : (long) Math.floor((water - capacity) / leakRate * 1_000_000_000L) + 1;
+    }
+
+    public static void main(String[] args) {
+        LeakyBucketRateLimiter limiter = new LeakyBucketRateLimiter(2, 10); // capacity 2, leaks 10 req/s
+        long start = System.nanoTime();
+        CompletableFuture<?>[] waiters = new CompletableFuture<?>[8];
+        for (int i = 0; i < waiters.length; i++) {
+            int n = i;
+            waiters[i] = limiter.acquireAsync(1).thenRun(() ->
+                System.out.printf("async waiter %d granted after %d ms%n", n, (System.nanoTime() - start) / 1_000_000));
+        }
+        CompletableFuture.allOf(waiters).join();
+    }
 }
 
 /*
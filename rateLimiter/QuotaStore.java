@@ -0,0 +1,15 @@
+package rateLimiter;
+
+import java.io.IOException;
+
+/**
+ * The shared side of a distributed limit: one global token bucket per key, from which replicas take permits in chunks.
+ * Implementations must be safe to call from many threads and processes at once.
+ */
+public interface QuotaStore {
+    /**
+     * Takes up to requested permits from the key's global bucket (created full on first use with the given
+     * capacity and refill rate) and returns how many were granted, 0 if the bucket is empty.
+     */
+    int take(String key, int requested, int capacity, int refillRatePerSecond) throws IOException;
+}
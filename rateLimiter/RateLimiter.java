@@ -0,0 +1,20 @@
+package rateLimiter;
+
+/**
+ * Common contract of the single-stream limiters, so strategies can be swapped behind one type.
+ */
+public interface RateLimiter {
+    boolean allowRequest();
+
+    /**
+     * Admits up to requested requests with a single decision (one lock or CAS), returns how many were admitted.
+     * Same outcome as calling allowRequest() requested times back to back.
+     */
+    int allowBatch(int requested);
+
+    /** Permits a request could take right now: tokens, room left in the bucket or in the window. */
+    double availablePermits();
+
+    /** Nanoseconds until allowRequest() can next succeed, 0 if it can now, Long.MAX_VALUE if it never can (a limit of 0). */
+    long nanosToNextPermit();
+}
@@ -1,39 +1,93 @@
 package rateLimiter;
 
-public class SlidingWindowCounterRateLimiter {
-    private final int windowSizeInMillis;
+public class SlidingWindowCounterRateLimiter implements RateLimiter {
+    private final long bucketNanos;
     private final int numberOfBuckets;
     private final int maxRequests;
     private final int[] buckets;
+    private final Clock clock;
+    private final long origin;       // clock nanos at construction, times below are relative to it
     private long lastBucketTime;
 
     public SlidingWindowCounterRateLimiter(int maxRequests, int windowSizeInMillis, int numberOfBuckets) {
+        this(maxRequests, windowSizeInMillis, numberOfBuckets, Clock.system());
+    }
+
+    public SlidingWindowCounterRateLimiter(int maxRequests, int windowSizeInMillis, int numberOfBuckets, Clock clock) {
         this.maxRequests = maxRequests;
-        this.windowSizeInMillis = windowSizeInMillis;
+        this.bucketNanos = windowSizeInMillis * 1_000_000L / numberOfBuckets;
         this.numberOfBuckets = numberOfBuckets;
         this.buckets = new int[numberOfBuckets];
-        this.lastBucketTime = System.currentTimeMillis();
+        this.clock = clock;
+        this.origin = clock.nanoTime();
+        this.lastBucketTime = 0;
     }
 
+    @Override
     public synchronized boolean allowRequest() {
-        long now = System.currentTimeMillis();
-        int bucketSize = windowSizeInMillis / numberOfBuckets;
-        int currentBucket = (int)((now / bucketSize) % numberOfBuckets);
+        return admit(1) == 1;
+    }
+
+    @Override
+    public synchronized int allowBatch(int requested) {
+        if (requested < 0) {
+            throw new IllegalArgumentException("Requested count must not be negative");
+        }
+        return admit(requested);
+    }
+
+    // counts all requested (rejected ones too, as allowRequest always did), returns how many fit under the limit
+    private int admit(int requested) {
+        int currentBucket = advance(clock.nanoTime() - origin);
+        int total = total();
+        buckets[currentBucket] += requested;
+        return Math.max(0, Math.min(requested, maxRequests - total));
+    }
+
+    // resets the buckets time moved into since the last call, returns the current bucket
+    private int advance(long now) {
+        int currentBucket = (int)((now / bucketNanos) % numberOfBuckets);
 
         // Reset stale bucket if time moved
-        long elapsedBuckets = (now - lastBucketTime) / bucketSize;
-        for (int i = 1; i <= Math.min(elapsedBuckets, numberOfBuckets); i++) {
-            int idx = (currentBucket + i) % numberOfBuckets;
+        long elapsedBuckets = now / bucketNanos - lastBucketTime / bucketNanos;
+        for (int i = 0; i < Math.min(elapsedBuckets, numberOfBuckets); i++) {
+            int idx = Math.floorMod(currentBucket - i, numberOfBuckets);
             buckets[idx] = 0;
         }
 
         lastBucketTime = now;
-        buckets[currentBucket]++;
+        return currentBucket;
+    }
 
-        // Sum all buckets
+    private int total() {
         int total = 0;
         for (int count : buckets) total += count;
-        return total <= maxRequests;
+        return total;
+    }
+
+    @Override
+    public synchronized double availablePermits() {
+        advance(clock.nanoTime() - origin);
+        return Math.max(0, maxRequests - total());
+    }
+
+    @Override
+    public synchronized long nanosToNextPermit() {
+        if (maxRequests <= 0) {
+            return Long.MAX_VALUE;
+        }
+        long now = clock.nanoTime() - origin;
+        int currentBucket = advance(now);
+        int total = total();
+        long nextBoundary = (now / bucketNanos + 1) * bucketNanos;
+        // the oldest bucket is reset at the next boundary, the one after it a bucket later, ...
+        for (int i = 1; total >= maxRequests && i <= numberOfBuckets; i++) {
+            total -= buckets[(currentBucket + i) % numberOfBuckets];
+            if (total < maxRequests) {
+                return nextBoundary + (i - 1L) * bucketNanos - now;
+            }
+        }
+        return 0;
     }
 
     public static void main(String[] args) throws InterruptedException {
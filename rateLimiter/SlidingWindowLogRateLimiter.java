@@ -1,33 +1,178 @@
 package rateLimiter;
 
-import java.util.LinkedList;
-import java.util.Queue;
+public class SlidingWindowLogRateLimiter implements RateLimiter {
+    /**
+     * EXACT: every accepted timestamp in a long[] ring buffer of maxRequests entries, exact rolling window.
+     * APPROXIMATE: a fixed number of sub-window counters, the oldest one weighted by how much of it is still inside
+     * the window. Memory does not depend on maxRequests.
+     */
+    public enum Mode {
+        EXACT,
+        APPROXIMATE
+    }
+
+    private static final int OBJECT_OVERHEAD_BYTES = 64; // limiter object and array headers, compressed oops
 
-public class SlidingWindowLogRateLimiter {
     private final int maxRequests;
-    private final long windowSizeInMillis;
-    private final Queue<Long> requestTimestamps;
+    private final long windowNanos;
+    private final Mode mode;
+    private final Clock clock;
+    private final long origin;       // clock nanos at construction, times below are relative to it
+
+    // EXACT: timestamps[head .. head + count - 1] (mod maxRequests), oldest first
+    private final long[] timestamps;
+    private int head;
+    private int count;
+
+    // APPROXIMATE: ring of subWindows + 1 counters, slot w % length counts sub-window number w
+    private final long[] subWindowCounts;
+    private final long subWindowNanos;
+    private long currentSubWindow;
+    private long total; // sum of subWindowCounts
 
     public SlidingWindowLogRateLimiter(int maxRequests, long windowSizeInMillis) {
+        this(maxRequests, windowSizeInMillis, Mode.EXACT, 0);
+    }
+
+    public SlidingWindowLogRateLimiter(int maxRequests, long windowSizeInMillis, Mode mode, int subWindows) {
+        this(maxRequests, windowSizeInMillis, mode, subWindows, Clock.system());
+    }
+
+    /** maxRequests 0 is allowed and rejects every request. */
+    public SlidingWindowLogRateLimiter(int maxRequests, long windowSizeInMillis, Mode mode, int subWindows, Clock clock) {
+        if (maxRequests < 0) {
+            throw new IllegalArgumentException("maxRequests must not be negative");
+        }
         this.maxRequests = maxRequests;
-        this.windowSizeInMillis = windowSizeInMillis;
-        this.requestTimestamps = new LinkedList<>();
+        this.windowNanos = windowSizeInMillis * 1_000_000L;
+        this.mode = mode;
+        this.clock = clock;
+        this.origin = clock.nanoTime();
+        if (mode == Mode.EXACT) {
+            this.timestamps = new long[maxRequests];
+            this.subWindowCounts = null;
+            this.subWindowNanos = 0;
+        } else {
+            if (subWindows <= 0 || windowSizeInMillis % subWindows != 0) {
+                throw new IllegalArgumentException("Sub-window count must be positive and divide the window size");
+            }
+            this.timestamps = null;
+            this.subWindowCounts = new long[subWindows + 1]; // + the partly expired one
+            this.subWindowNanos = windowNanos / subWindows;
+            this.currentSubWindow = 0;
+        }
     }
 
+    @Override
     public synchronized boolean allowRequest() {
-        long now = System.currentTimeMillis();
+        return allowBatch(1) == 1;
+    }
+
+    @Override
+    public synchronized int allowBatch(int requested) {
+        if (requested < 0) {
+            throw new IllegalArgumentException("Requested count must not be negative");
+        }
+        long now = clock.nanoTime() - origin;
+        return mode == Mode.EXACT ? allowExact(now, requested) : allowApproximate(now, requested);
+    }
 
+    @Override
+    public synchronized double availablePermits() {
+        long now = clock.nanoTime() - origin;
+        if (mode == Mode.EXACT) {
+            expireLog(now);
+            return maxRequests - count;
+        }
+        return Math.max(0, Math.ceil(maxRequests - estimate(now)));
+    }
+
+    @Override
+    public synchronized long nanosToNextPermit() {
+        if (maxRequests == 0) {
+            return Long.MAX_VALUE;
+        }
+        long now = clock.nanoTime() - origin;
+        if (mode == Mode.EXACT) {
+            expireLog(now);
+            // the oldest entry leaves the window once now - timestamp >= window
+            return count < maxRequests ? 0 : timestamps[head] + windowNanos - now;
+        }
+        if (estimate(now) < maxRequests) {
+            return 0;
+        }
+        // the estimate falls linearly while the oldest sub-window slides out, then the next one takes its place
+        int n = subWindowCounts.length;
+        double total = this.total;
+        for (int k = 0; k < n; k++) {
+            long start = (currentSubWindow + k) * subWindowNanos;
+            long oldestCount = subWindowCounts[(int) ((currentSubWindow + k + 1) % n)];
+            double over = total - maxRequests;
+            if (over < 0) {
+                return Math.max(1, start - now); // the sub-window that just expired was enough
+            }
+            if (over < oldestCount) {
+                // at `at` the estimate equals the limit, the next nanosecond it is below
+                double at = start + over / oldestCount * subWindowNanos;
+                return Math.max(1, (long) Math.floor(at - now) + 1);
+            }
+            total -= oldestCount;
+        }
+        return Math.max(1, (currentSubWindow + n) * subWindowNanos - now);
+    }
+
+    private void expireLog(long now) {
         // Remove timestamps older than window
-        while (!requestTimestamps.isEmpty() && requestTimestamps.peek() <= now - windowSizeInMillis) {
-            requestTimestamps.poll();
+        while (count > 0 && timestamps[head] <= now - windowNanos) {
+            head = head + 1 == maxRequests ? 0 : head + 1;
+            count--;
         }
+    }
 
-        if (requestTimestamps.size() < maxRequests) {
-            requestTimestamps.add(now);
-            return true;
-        } else {
-            return false; // limit reached
+    private int allowExact(long now, int requested) {
+        expireLog(now);
+
+        int admitted = Math.min(requested, maxRequests - count); // 0 once the limit is reached
+        for (int i = 0; i < admitted; i++) {
+            int tail = head + count;
+            timestamps[tail >= maxRequests ? tail - maxRequests : tail] = now;
+            count++;
+        }
+        return admitted;
+    }
+
+    private int allowApproximate(long now, int requested) {
+        double estimate = estimate(now);
+
+        // each request goes in while the estimate is still below the limit
+        int admitted = (int) Math.max(0, Math.min(requested, Math.ceil(maxRequests - estimate)));
+        subWindowCounts[(int) (currentSubWindow % subWindowCounts.length)] += admitted;
+        total += admitted;
+        return admitted;
+    }
+
+    // requests in [now - window, now], after clearing the sub-windows time moved past
+    private double estimate(long now) {
+        int n = subWindowCounts.length;
+        long subWindow = now / subWindowNanos;
+        // clear the sub-windows time moved past, at most all of them
+        for (long w = currentSubWindow + 1; w <= subWindow && w <= currentSubWindow + n; w++) {
+            int idx = (int) (w % n);
+            total -= subWindowCounts[idx];
+            subWindowCounts[idx] = 0;
         }
+        currentSubWindow = Math.max(currentSubWindow, subWindow);
+
+        // the oldest sub-window only partly overlaps the window [now - window, now]
+        int oldest = (int) ((currentSubWindow + 1) % n);
+        double elapsedInCurrent = (double) (now - currentSubWindow * subWindowNanos) / subWindowNanos;
+        return total - subWindowCounts[oldest] * elapsedInCurrent;
+    }
+
+    /** Bytes retained by this limiter, fixed at construction in both modes. */
+    public long memoryFootprintBytes() {
+        long slots = mode == Mode.EXACT ? timestamps.length : subWindowCounts.length;
+        return OBJECT_OVERHEAD_BYTES + slots * Long.BYTES;
     }
 
     public static void main(String[] args) throws InterruptedException {
@@ -37,13 +182,21 @@ public class SlidingWindowLogRateLimiter {
             System.out.println(limiter.allowRequest());
             Thread.sleep(1500);
         }
+
+        // footprint per tier, 10k requests per minute
+        SlidingWindowLogRateLimiter exact = new SlidingWindowLogRateLimiter(10_000, 60_000);
+        SlidingWindowLogRateLimiter approximate = new SlidingWindowLogRateLimiter(10_000, 60_000, Mode.APPROXIMATE, 60);
+        System.out.printf("10k/min: EXACT %,d bytes, APPROXIMATE (60 sub-windows) %,d bytes, boxed LinkedList log ~%,d bytes%n",
+            exact.memoryFootprintBytes(), approximate.memoryFootprintBytes(), 10_000L * 40); // 24 byte node + 16 byte Long
     }
 }
 
 /*
 Pros:
 Rate limiting implemented by this algorithm is very accurate. In any rolling window, requests will not exceed the rate limit.
+The log is a preallocated long[] ring buffer: no boxing, no node per request, constant memory (8 bytes per allowed request).
 
 Cons:
-The algorithm consumes a lot of memory because even if a request is rejected, its timestamp might still be stored in memory.
+Memory still grows with maxRequests (a 10k/min limit holds 80 KB). For large limits use APPROXIMATE mode, which keeps
+one counter per sub-window and may be off by part of the oldest sub-window's requests, like the sliding window counter.
  */
@@ -0,0 +1,160 @@
+package rateLimiter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * QuotaStore client talking to a Server over one TCP connection, a stand-in for a real shared store (Redis, a quota
+ * service, ...) in tests and demos. Requests are serialized on the connection, which is fine because only lease
+ * renewals go to the store.
+ *
+ * Connecting and every response are bounded by a timeout, so a hung store fails the call (DistributedRateLimiter then
+ * fails closed) instead of blocking the renewing thread forever. After any IOException the connection is dropped, a
+ * half-written request or unread response would leave the stream out of sync; the next call reconnects.
+ *
+ * Protocol, per request: UTF key, int requested, int capacity, int refillRatePerSecond -> int granted.
+ */
+public class TcpQuotaStore implements QuotaStore, Closeable {
+    private static final int DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    private final String host;
+    private final int port;
+    private final int timeoutMillis;
+    private Socket socket; // guarded by this, null while disconnected
+    private DataInputStream in;
+    private DataOutputStream out;
+    private boolean closed;
+
+    public TcpQuotaStore(String host, int port) throws IOException {
+        this(host, port, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /** Connects right away, so a wrong address fails here rather than on the first renewal. */
+    public TcpQuotaStore(String host, int port, int timeoutMillis) throws IOException {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+        synchronized (this) {
+            connect();
+        }
+    }
+
+    private void connect() throws IOException {
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), timeoutMillis);
+            s.setSoTimeout(timeoutMillis);
+            s.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
+        socket = s;
+    }
+
+    private void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // already broken
+            }
+            socket = null;
+            in = null;
+            out = null;
+        }
+    }
+
+    @Override
+    public synchronized int take(String key, int requested, int capacity, int refillRatePerSecond) throws IOException {
+        if (closed) {
+            throw new IOException("Quota store client is closed");
+        }
+        try {
+            if (socket == null) {
+                connect();
+            }
+            out.writeUTF(key);
+            out.writeInt(requested);
+            out.writeInt(capacity);
+            out.writeInt(refillRatePerSecond);
+            out.flush();
+            return in.readInt();
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        disconnect();
+    }
+
+    /** Serves a QuotaStore (usually an InMemoryQuotaStore) to TcpQuotaStore clients, one thread per connection. */
+    public static class Server implements Closeable {
+        private final ServerSocket serverSocket;
+        private final QuotaStore store;
+
+        public Server(int port, QuotaStore store) throws IOException {
+            this.serverSocket = new ServerSocket(port);
+            this.store = store;
+            Thread acceptor = new Thread(this::acceptLoop, "quota-store-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        public int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket client = serverSocket.accept();
+                    Thread handler = new Thread(() -> serve(client), "quota-store-client");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return; // closed
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try (Socket s = client) {
+                s.setTcpNoDelay(true);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+                while (true) {
+                    String key = in.readUTF();
+                    int requested = in.readInt();
+                    int capacity = in.readInt();
+                    int refillRatePerSecond = in.readInt();
+                    out.writeInt(store.take(key, requested, capacity, refillRatePerSecond));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // client went away
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
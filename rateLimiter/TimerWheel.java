@@ -0,0 +1,153 @@
+package rateLimiter;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel, one daemon thread for any number of pending timeouts.
+ *
+ * Timeouts are handed over through a lock-free queue and hashed into wheelSize buckets by deadline tick (with a
+ * rounds counter for deadlines more than one revolution ahead). Every tick the worker runs the due timeouts of one
+ * bucket in the order they were scheduled, so timeouts scheduled in deadline order also fire in that order.
+ * While nothing is pending the worker parks instead of ticking.
+ *
+ * Tasks run on the worker thread and must be short, e.g. completing a future (hand heavy work to an executor).
+ * A task that throws is reported to the worker's UncaughtExceptionHandler and the wheel keeps running.
+ */
+public final class TimerWheel {
+    private static final class Timeout {
+        final long deadline;
+        final Runnable task;
+        long rounds;
+        Timeout next;
+
+        Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+    }
+
+    private static volatile TimerWheel shared;
+
+    private final long tickNanos;
+    private final Timeout[] heads;
+    private final Timeout[] tails;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startTime;
+    private final Thread worker;
+    private long tick; // worker thread only
+
+    public TimerWheel(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0 || wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Tick must be positive and wheel size a power of two");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.heads = new Timeout[wheelSize];
+        this.tails = new Timeout[wheelSize];
+        this.mask = wheelSize - 1;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, "timer-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** The wheel shared by all limiters, 1ms ticks. */
+    public static TimerWheel shared() {
+        TimerWheel wheel = shared;
+        if (wheel == null) {
+            synchronized (TimerWheel.class) {
+                wheel = shared;
+                if (wheel == null) {
+                    shared = wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 512);
+                }
+            }
+        }
+        return wheel;
+    }
+
+    /** Runs task on the wheel thread once delay has passed (rounded up to the next tick). */
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        scheduleAt(task, System.nanoTime() + unit.toNanos(delay));
+    }
+
+    /** Runs task on the wheel thread once System.nanoTime() reaches deadline (rounded up to the next tick). */
+    public void scheduleAt(Runnable task, long deadline) {
+        incoming.add(new Timeout(deadline, task));
+        if (pending.getAndIncrement() == 0) {
+            LockSupport.unpark(worker); // worker may be parked idle
+        }
+    }
+
+    private void run() {
+        while (true) {
+            if (pending.get() == 0) {
+                LockSupport.park(this);
+                // nothing was in the buckets while idle, skip the ticks that passed instead of replaying them
+                tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+                continue;
+            }
+
+            long tickEnd = startTime + (tick + 1) * tickNanos;
+            long sleep = tickEnd - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                continue; // spurious or early wake up
+            }
+
+            transferIncoming();
+            expire((int) (tick & mask));
+            tick++;
+        }
+    }
+
+    private void transferIncoming() {
+        Timeout t;
+        while ((t = incoming.poll()) != null) {
+            long deadlineTick = Math.max(tick, (t.deadline - startTime + tickNanos - 1) / tickNanos - 1);
+            t.rounds = (deadlineTick - tick) / heads.length;
+            int bucket = (int) (deadlineTick & mask);
+            if (tails[bucket] == null) {
+                heads[bucket] = t;
+            } else {
+                tails[bucket].next = t;
+            }
+            tails[bucket] = t;
+        }
+    }
+
+    private void expire(int bucket) {
+        Timeout prev = null;
+        Timeout t = heads[bucket];
+        while (t != null) {
+            Timeout next = t.next;
+            if (t.rounds > 0) {
+                t.rounds--;
+                prev = t;
+            } else {
+                // unlink, then run
+                if (prev == null) {
+                    heads[bucket] = next;
+                } else {
+                    prev.next = next;
+                }
+                if (tails[bucket] == t) {
+                    tails[bucket] = prev;
+                }
+                t.next = null;
+                pending.decrementAndGet();
+                try {
+                    t.task.run();
+                } catch (RuntimeException e) {
+                    // one failing task must not stop the wheel, report it like an uncaught exception of this thread
+                    Thread current = Thread.currentThread();
+                    current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                }
+            }
+            t = next;
+        }
+    }
+}
@@ -1,23 +1,33 @@
 package rateLimiter;
 
-import java.time.Instant;
-import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
 
-public class TokenBucketRateLimiter {
+public class TokenBucketRateLimiter implements RateLimiter {
     private double tokens;           // fractional tokens for precision
-    private Instant lastRefill;      // last refill timestamp
+    private long lastRefill;         // last refill timestamp, clock nanos
     private final int capacity;      // max tokens in bucket
     private final double refillRate; // tokens per second
+    private int asyncWaiters;        // acquireAsync futures still on the timer wheel
+    private final Clock clock;
 
     public TokenBucketRateLimiter(int bucketCapacity, int refillRatePerSecond){
+        this(bucketCapacity, refillRatePerSecond, Clock.system());
+    }
+
+    public TokenBucketRateLimiter(int bucketCapacity, int refillRatePerSecond, Clock clock){
         this.capacity = bucketCapacity;
         this.refillRate = refillRatePerSecond;
         this.tokens = bucketCapacity;
-        this.lastRefill = Instant.now();
+        this.clock = clock;
+        this.lastRefill = clock.nanoTime();
     }
 
+    @Override
     public synchronized boolean allowRequest() {
-        refill();
+        refill(clock.nanoTime());
         if (tokens >= 1) {
             tokens -= 1;
             return true;
@@ -25,27 +35,133 @@ public class TokenBucketRateLimiter {
         return false;
     }
 
-    private void refill() {
-        Instant now = Instant.now();
-        long millis = Duration.between(lastRefill, now).toMillis();
-        if (millis <= 0) return;
+    @Override
+    public synchronized int allowBatch(int requested) {
+        if (requested < 0) {
+            throw new IllegalArgumentException("Requested count must not be negative");
+        }
+        refill(clock.nanoTime());
+        int admitted = (int) Math.max(0, Math.min(requested, Math.floor(tokens)));
+        tokens -= admitted;
+        return admitted;
+    }
+
+    /** Blocks (parks) until the permits are granted. Waiters are served in arrival order. */
+    public void acquire(int permits) {
+        parkUntil(clock.toSystemNanos(reserve(permits)));
+    }
+
+    /**
+     * Completes once the permits are granted, timed by the shared TimerWheel, so waiting costs no thread.
+     * The permits are reserved immediately, cancelling the future does not give them back.
+     * A granted-now future is completed by the caller; a waiting one is completed on the common ForkJoinPool,
+     * never on the wheel thread, so dependent stages (thenRun, ...) may do real work.
+     */
+    public CompletableFuture<Void> acquireAsync(int permits) {
+        return acquireAsync(permits, ForkJoinPool.commonPool());
+    }
 
-        double newTokens = (millis / 1000.0) * refillRate; // nano second precision
+    /** As acquireAsync(permits), a waiting future is completed on executor. */
+    public CompletableFuture<Void> acquireAsync(int permits, Executor executor) {
+        CompletableFuture<Void> granted = new CompletableFuture<>();
+        synchronized (this) {
+            long now = clock.nanoTime();
+            long grantedAt = reserve(permits, now);
+            if (grantedAt == now && asyncWaiters == 0) {
+                granted.complete(null);
+            } else {
+                // a waiter whose timer has not fired yet goes first, even if the tokens are already there
+                asyncWaiters++;
+                // scheduled under the lock, so the wheel receives the timeouts in reservation order
+                TimerWheel.shared().scheduleAt(() -> {
+                    synchronized (this) {
+                        asyncWaiters--;
+                    }
+                    granted.completeAsync(() -> null, executor); // dependents must not run on the wheel thread
+                }, clock.toSystemNanos(grantedAt));
+            }
+        }
+        return granted;
+    }
+
+    /**
+     * Takes the permits now, letting tokens go negative (debt), and returns the clock time at which the debt is
+     * refilled (now if there is none). Each later reservation sees the earlier debt and is granted later, which
+     * makes waiting FIFO, and allowRequest() keeps failing while anyone is waiting.
+     */
+    private synchronized long reserve(int permits, long now) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("Permits must be positive");
+        }
+        refill(now);
+        tokens -= permits;
+        return tokens >= 0 ? now : now + (long) Math.ceil(-tokens / refillRate * 1_000_000_000L);
+    }
+
+    private synchronized long reserve(int permits) {
+        return reserve(permits, clock.nanoTime());
+    }
+
+    static void parkUntil(long deadline) {
+        boolean interrupted = false;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            interrupted |= Thread.interrupted(); // the permits are already reserved, finish waiting
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void refill(long now) {
+        long nanos = now - lastRefill;
+        if (nanos <= 0) return;
+
+        double newTokens = (nanos / 1_000_000_000.0) * refillRate; // nano second precision
         tokens = Math.min(capacity, tokens + newTokens);
         lastRefill = now;
     }
 
     // Optional: get current available tokens
     public synchronized double getTokens() {
-        refill();
+        refill(clock.nanoTime());
         return tokens;
     }
+
+    @Override
+    public synchronized double availablePermits() {
+        refill(clock.nanoTime());
+        return Math.max(0, tokens); // negative while acquire() callers are in debt
+    }
+
+    @Override
+    public synchronized long nanosToNextPermit() {
+        refill(clock.nanoTime());
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / refillRate * 1_000_000_000L);
+    }
+
+    public static void main(String[] args) {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 10); // burst 2, 10 req/s
+        long start = System.nanoTime();
+        CompletableFuture<?>[] waiters = new CompletableFuture<?>[8];
+        for (int i = 0; i < waiters.length; i++) {
+            int n = i;
+            waiters[i] = limiter.acquireAsync(1).thenRun(() ->
+                System.out.printf("async waiter %d granted after %d ms%n", n, (System.nanoTime() - start) / 1_000_000));
+        }
+        CompletableFuture.allOf(waiters).join();
+
+        limiter.acquire(3);
+        System.out.printf("blocking acquire(3) granted after %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
 }
 /*
 Pros:
 The algorithm is easy to implement.
 Memory efficient.
 Token bucket allows a burst of traffic for short periods. A request can go through as long as there are tokens left.
+acquire/acquireAsync let callers wait instead of retrying: waiters reserve tokens as debt and are granted in arrival order.
 
 Cons:
 Two parameters in the algorithm are bucket size and token refill rate. However, it might be challenging to tune them properly.
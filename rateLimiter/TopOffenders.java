@@ -0,0 +1,130 @@
+package rateLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The keys rejected most often, tracked with the Space-Saving algorithm in fixed memory.
+ *
+ * Each stripe keeps a handful of counters. A key already counted is incremented; an unseen key takes over the
+ * smallest counter and inherits its count, remembered as the error of the new key's count. Any key with more than
+ * 1 / counters of its stripe's hits is guaranteed to be listed, and no count is over-estimated by more than its error.
+ *
+ * Counters are plain arrays scanned linearly (a few dozen entries), so recording allocates nothing. Keys are spread
+ * over independently locked stripes by hash.
+ */
+public class TopOffenders<K> {
+    private final Stripe[] stripes;
+
+    public static final class Entry<K> {
+        public final K key;
+        public final long count;   // upper bound of the true count
+        public final long error;   // count - error is a lower bound
+
+        Entry(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count + (error > 0 ? " (+-" + error + ")" : "");
+        }
+    }
+
+    private static final class Stripe {
+        final Object[] keys;
+        final long[] counts;
+        final long[] errors;
+        int size;
+
+        Stripe(int counters) {
+            keys = new Object[counters];
+            counts = new long[counters];
+            errors = new long[counters];
+        }
+
+        synchronized void record(Object key, long n) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    counts[i] += n;
+                    return;
+                }
+            }
+            if (size < keys.length) {
+                keys[size] = key;
+                counts[size] = n;
+                errors[size] = 0;
+                size++;
+                return;
+            }
+            int min = 0;
+            for (int i = 1; i < size; i++) {
+                if (counts[i] < counts[min]) {
+                    min = i;
+                }
+            }
+            keys[min] = key;
+            errors[min] = counts[min];
+            counts[min] += n;
+        }
+    }
+
+    public TopOffenders(int countersPerStripe, int stripeCount) {
+        if (countersPerStripe <= 0 || stripeCount <= 0 || Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Counter count must be positive and stripe count a power of two");
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(countersPerStripe);
+        }
+    }
+
+    public void record(K key) {
+        record(key, 1);
+    }
+
+    public void record(K key, long n) {
+        int h = key.hashCode();
+        stripes[(h ^ (h >>> 16)) & (stripes.length - 1)].record(key, n);
+    }
+
+    /** The n keys with the highest counts, highest first. */
+    @SuppressWarnings("unchecked")
+    public List<Entry<K>> top(int n) {
+        List<Entry<K>> all = new ArrayList<>();
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                for (int i = 0; i < s.size; i++) {
+                    all.add(new Entry<>((K) s.keys[i], s.counts[i], s.errors[i]));
+                }
+            }
+        }
+        all.sort((a, b) -> Long.compare(b.count, a.count));
+        return all.size() > n ? new ArrayList<>(all.subList(0, n)) : all;
+    }
+
+    public static void main(String[] args) {
+        TopOffenders<String> offenders = new TopOffenders<>(16, 4);
+        Random random = new Random(42);
+        // three abusive clients among 10k occasional ones
+        for (int i = 0; i < 200_000; i++) {
+            double r = random.nextDouble();
+            String key = r < 0.2 ? "10.0.0.1" : r < 0.3 ? "10.0.0.2" : r < 0.35 ? "10.0.0.3" : "client-" + random.nextInt(10_000);
+            offenders.record(key);
+        }
+        System.out.println("top 5: " + offenders.top(5));
+    }
+}
+
+/*
+Pros:
+Fixed memory (stripes * counters) however many distinct keys are rejected, no allocation when recording.
+Heavy hitters are never missed and their counts carry an explicit error bound.
+
+Cons:
+Counts of rarely seen keys are mostly error; only the top of the list is meaningful.
+A stripe only sees the keys hashed to it, so the guarantee is per stripe share of the traffic.
+ */
@@ -0,0 +1,43 @@
+package rateLimiter.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every benchmark at 1, 4, 16 and 64 threads, twice: throughput (ops/sec) and sampled decision latency
+ * (p50 / p99 / p99.99 in ns). The GC profiler adds the allocation rate (gc.alloc.rate.norm = bytes per decision).
+ * Results go to <threads>t-jmh-throughput.json and <threads>t-jmh-latency.json for diffing between commits.
+ *
+ * Usage: java -jar target/benchmarks.jar [benchmark regex]
+ * For a single configuration use the plain JMH runner: java -cp target/benchmarks.jar org.openjdk.jmh.Main -h
+ */
+public class BenchmarkMain {
+    private static final int[] THREADS = {1, 4, 16, 64};
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "rateLimiter\\.benchmarks\\..*";
+        run(include, Mode.Throughput, TimeUnit.SECONDS, "jmh-throughput.json");
+        run(include, Mode.SampleTime, TimeUnit.NANOSECONDS, "jmh-latency.json");
+    }
+
+    private static void run(String include, Mode mode, TimeUnit unit, String resultFile) throws RunnerException {
+        for (int threads : THREADS) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .mode(mode)
+                .timeUnit(unit)
+                .threads(threads)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(threads + "t-" + resultFile);
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package rateLimiter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rateLimiter.AtomicTokenBucketRateLimiter;
+import rateLimiter.HierarchicalRateLimiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HierarchicalRateLimiter (user, tenant, global) against the single AtomicTokenBucketRateLimiter each of its levels
+ * is built from. Every thread is its own user, threads alternate between two tenants, so the user level is
+ * uncontended and the tenant and global levels are shared.
+ *
+ * saturated = false: every level admits nearly everything. saturated = true: the user level rejects nearly
+ * everything, so the shared levels are never reached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HierarchicalLimiterBenchmark {
+    @Param({"false", "true"})
+    public boolean saturated;
+
+    private HierarchicalRateLimiter hierarchy;
+    private AtomicTokenBucketRateLimiter single;
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Caller {
+        String tenant;
+        String user;
+
+        @Setup(Level.Trial)
+        public void setUp(HierarchicalLimiterBenchmark benchmark) {
+            int thread = benchmark.threads.getAndIncrement();
+            tenant = thread % 2 == 0 ? "acme" : "globex";
+            user = "user" + thread;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int userMax = saturated ? 1 : 1_000_000;
+        int userRate = saturated ? 1 : 1_000_000_000;
+        hierarchy = new HierarchicalRateLimiter(userMax, userRate, 1_000_000, 1_000_000_000, 1_000_000, 1_000_000_000);
+        single = new AtomicTokenBucketRateLimiter(userMax, userRate);
+    }
+
+    @Benchmark
+    public boolean hierarchy(Caller caller) {
+        return hierarchy.allowRequest(caller.tenant, caller.user);
+    }
+
+    @Benchmark
+    public boolean singleBucket() {
+        return single.allowRequest();
+    }
+}
@@ -0,0 +1,83 @@
+package rateLimiter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rateLimiter.KeyedRateLimiter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KeyedRateLimiter with each of the five algorithms, either one hot key shared by all threads or 128k keys visited
+ * in a per-thread scrambled order (stripe locks contended only by hash collisions, buckets mostly out of cache).
+ * Keys are boxed once in setup so the measured path allocates only what the limiter itself allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyedLimiterBenchmark {
+    @Param({"tokenBucket", "leakyBucket", "fixedWindow", "slidingWindowLog", "slidingWindowCounter"})
+    public String algorithm;
+
+    @Param({"1", "131072"}) // power of two
+    public int keys;
+
+    private KeyedRateLimiter<Long> limiter;
+    private Long[] keyPool;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = ThreadLocalRandom.current().nextInt();
+
+        // an odd step visits every index of a power of two pool
+        int next(int mask) {
+            index += 0x9E3779B9;
+            return index & mask;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new KeyedRateLimiter<>(create(algorithm), 64, 60_000);
+        keyPool = new Long[keys];
+        for (int i = 0; i < keys; i++) {
+            keyPool[i] = (long) i;
+        }
+    }
+
+    @Benchmark
+    public boolean allowRequest(Cursor cursor) {
+        return limiter.allowRequest(keyPool[cursor.next(keys - 1)]);
+    }
+
+    // small per-key limits, as for API keys or client IPs
+    static KeyedRateLimiter.Algorithm create(String name) {
+        switch (name) {
+            case "tokenBucket":
+                return KeyedRateLimiter.tokenBucket(20, 10);
+            case "leakyBucket":
+                return KeyedRateLimiter.leakyBucket(20, 10);
+            case "fixedWindow":
+                return KeyedRateLimiter.fixedWindow(20, 1000);
+            case "slidingWindowLog":
+                return KeyedRateLimiter.slidingWindowLog(20, 1000);
+            case "slidingWindowCounter":
+                return KeyedRateLimiter.slidingWindowCounter(20, 1000, 10);
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + name);
+        }
+    }
+}
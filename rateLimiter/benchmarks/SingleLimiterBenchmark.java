@@ -0,0 +1,96 @@
+package rateLimiter.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rateLimiter.AtomicTokenBucketRateLimiter;
+import rateLimiter.Clock;
+import rateLimiter.ConcurrentSlidingWindowCounterRateLimiter;
+import rateLimiter.FixedWindowRateLimiter;
+import rateLimiter.InstrumentedRateLimiter;
+import rateLimiter.LeakyBucketRateLimiter;
+import rateLimiter.RateLimiter;
+import rateLimiter.SlidingWindowCounterRateLimiter;
+import rateLimiter.SlidingWindowLogRateLimiter;
+import rateLimiter.TokenBucketRateLimiter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One limiter shared by every benchmark thread (single key): the five algorithms plus their lock-free variants.
+ * Instrumented is AtomicTokenBucket behind InstrumentedRateLimiter, the cost of its counters.
+ *
+ * saturated = false: 1e9 permits per second for every algorithm, far above what the benchmark can drive, so nearly
+ * every decision admits. The windows are 10ms of 10M requests rather than 1s of 1e9, which would not fit the log.
+ * saturated = true: the limit is 1 per second, nearly every decision rejects (the path a limiter takes under attack).
+ * clock = coarse: the limiter reads the cached 100us Clock.coarse() instead of calling System.nanoTime().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingleLimiterBenchmark {
+    @Param({"FixedWindow", "SlidingWindowLog", "SlidingWindowCounter", "TokenBucket", "LeakyBucket",
+            "AtomicTokenBucket", "ConcurrentSlidingWindowCounter", "Instrumented"})
+    public String limiter;
+
+    @Param({"false", "true"})
+    public boolean saturated;
+
+    @Param({"system", "coarse"})
+    public String clock;
+
+    private RateLimiter rateLimiter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rateLimiter = create(limiter, saturated, clock.equals("coarse") ? Clock.coarse() : Clock.system());
+    }
+
+    @Benchmark
+    public boolean allowRequest() {
+        return rateLimiter.allowRequest();
+    }
+
+    @Benchmark
+    public int allowBatch() {
+        return rateLimiter.allowBatch(16);
+    }
+
+    static RateLimiter create(String name, boolean saturated, Clock clock) {
+        int max = saturated ? 1 : 10_000_000;       // requests per window, or burst
+        int window = saturated ? 1000 : 10;         // window in ms: 1/s saturated, 1e9/s like the rate below
+        int rate = saturated ? 1 : 1_000_000_000;   // refill / leak rate per second
+        switch (name) {
+            case "FixedWindow":
+                return new FixedWindowRateLimiter(max, window, clock);
+            case "SlidingWindowLog":
+                return new SlidingWindowLogRateLimiter(max, window, SlidingWindowLogRateLimiter.Mode.EXACT, 0, clock);
+            case "SlidingWindowCounter":
+                return new SlidingWindowCounterRateLimiter(max, window, 10, clock);
+            case "TokenBucket":
+                return new TokenBucketRateLimiter(max, rate, clock);
+            case "LeakyBucket":
+                return new LeakyBucketRateLimiter(max, rate, clock);
+            case "AtomicTokenBucket":
+                return new AtomicTokenBucketRateLimiter(max, rate, clock);
+            case "ConcurrentSlidingWindowCounter":
+                return new ConcurrentSlidingWindowCounterRateLimiter(max, window, 10, 1, clock);
+            case "Instrumented":
+                return new InstrumentedRateLimiter(new AtomicTokenBucketRateLimiter(max, rate, clock));
+            default:
+                throw new IllegalArgumentException("Unknown limiter: " + name);
+        }
+    }
+}
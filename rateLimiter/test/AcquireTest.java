@@ -0,0 +1,83 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** acquire() and acquireAsync() of the token and leaky buckets. */
+class AcquireTest {
+    private final Clock.Manual clock = new Clock.Manual();
+    private final ExecutorService grants = Executors.newSingleThreadExecutor(r -> new Thread(r, "grants"));
+    private final List<String> completedOn = new CopyOnWriteArrayList<>();
+    // records the thread each future is completed on; dependents registered in time run there too
+    private final Executor executor = task -> grants.execute(() -> {
+        completedOn.add(Thread.currentThread().getName());
+        task.run();
+    });
+
+    @AfterEach
+    void shutdown() {
+        grants.shutdownNow();
+    }
+
+    @Test
+    void tokenBucketGrantsWaitersInOrderOnTheExecutor() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 100, clock); // one token per 10ms
+        assertTrue(limiter.acquireAsync(1, executor).isDone());
+
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CompletableFuture<?>[] waiters = new CompletableFuture<?>[5];
+        for (int i = 0; i < waiters.length; i++) {
+            int n = i;
+            CompletableFuture<Void> granted = limiter.acquireAsync(1, executor);
+            assertFalse(granted.isDone());
+            waiters[i] = granted.thenRun(() -> order.add(n));
+        }
+        assertFalse(limiter.allowRequest()); // the waiters hold the permits
+        CompletableFuture.allOf(waiters).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(0, 1, 2, 3, 4), order);
+        assertEquals(List.of("grants", "grants", "grants", "grants", "grants"), completedOn);
+    }
+
+    @Test
+    void tokenBucketAcquireParksUntilTheDebtIsRefilled() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 50, clock); // one token per 20ms
+        limiter.acquire(1);
+        long start = System.nanoTime();
+        limiter.acquire(1);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    void leakyBucketReserveUsesTheSameFullBucketRuleAsAllowRequest() throws Exception {
+        LeakyBucketRateLimiter limiter = new LeakyBucketRateLimiter(3, 10, clock);
+        assertEquals(2, limiter.allowBatch(2));
+        assertTrue(limiter.acquireAsync(1, executor).isDone()); // water 2 < 3: allowRequest would admit it too
+        assertFalse(limiter.allowRequest());                    // water 3: full
+        assertEquals(1, limiter.nanosToNextPermit());           // open again as soon as anything leaks
+        // two more go in once the water is below 2, i.e. just after 1 has leaked: 100ms
+        CompletableFuture<Void> waiter = limiter.acquireAsync(2, executor);
+        assertFalse(waiter.isDone());
+        waiter.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void leakyBucketCompletesWaitersOffTheWheelThread() throws Exception {
+        LeakyBucketRateLimiter limiter = new LeakyBucketRateLimiter(1, 100, clock);
+        assertTrue(limiter.acquireAsync(1, executor).isDone());
+        assertTrue(completedOn.isEmpty()); // granted now: completed by the caller
+        limiter.acquireAsync(1, executor).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("grants"), completedOn);
+    }
+}
@@ -0,0 +1,91 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import rateLimiter.AdaptiveConcurrencyLimiter.Algorithm;
+
+class AdaptiveConcurrencyLimiterTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void admitsWhileFewerThanLimitAreInFlight() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.aimd(0.5, 100 * MS), 3, 1, 10);
+        assertTrue(limiter.allowRequest());
+        assertTrue(limiter.allowRequest());
+        assertTrue(limiter.allowRequest());
+        assertFalse(limiter.allowRequest());
+        assertEquals(3, limiter.getInFlight());
+        limiter.release(5 * MS);
+        assertTrue(limiter.allowRequest());
+    }
+
+    @Test
+    void aimdGrowsByOnePerRoundTripOnlyWhileTheLimitIsUsed() {
+        Algorithm aimd = AdaptiveConcurrencyLimiter.aimd(0.5, 100 * MS);
+        assertEquals(4.25, aimd.update(4, 5 * MS, 4, false));
+        assertEquals(4.25, aimd.update(4, 5 * MS, 2, false));
+        assertEquals(4.0, aimd.update(4, 5 * MS, 1, false)); // a quarter of the limit in use
+        assertEquals(2.0, aimd.update(4, 5 * MS, 4, true));
+        assertEquals(2.0, aimd.update(4, 101 * MS, 4, false)); // too slow counts as a drop
+        assertThrows(IllegalArgumentException.class, () -> AdaptiveConcurrencyLimiter.aimd(1, 100 * MS));
+    }
+
+    @Test
+    void vegasKeepsTheEstimatedQueueBetweenAlphaAndBeta() {
+        Algorithm vegas = AdaptiveConcurrencyLimiter.vegas(3, 6, 1000);
+        double step = Math.log10(20);
+        assertEquals(20 + step / 20, vegas.update(20, 10 * MS, 20, false), 1e-9); // at the no-load RTT: no queue
+        double queue = 20 * (1 - 10.0 / 20);                                      // twice the no-load RTT: 10 queued
+        assertEquals(20 - step / 20 * (queue - 6 * step), vegas.update(20, 20 * MS, 20, false), 1e-9);
+        assertEquals(20.0, vegas.update(20, 14 * MS, 20, false), 1e-9);            // 5.7 queued: leave it
+        assertEquals(20 - 6 * step, vegas.update(20, 10 * MS, 20, true), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> AdaptiveConcurrencyLimiter.vegas(3, 3, 1000));
+    }
+
+    @Test
+    void theLimitStaysWithinItsBounds() {
+        AdaptiveConcurrencyLimiter shrinking = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.aimd(0.5, 100 * MS), 2, 2, 10);
+        assertTrue(shrinking.allowRequest());
+        shrinking.release(5 * MS, true);
+        assertEquals(2, shrinking.getLimit());
+
+        AdaptiveConcurrencyLimiter growing = new AdaptiveConcurrencyLimiter((limit, rtt, inFlight, dropped) -> 100, 2, 2, 10);
+        assertTrue(growing.allowRequest());
+        growing.release(5 * MS);
+        assertEquals(10, growing.getLimit());
+    }
+
+    @Test
+    void theLimitGrowsBackAfterACut() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.aimd(0.5, 100 * MS), 10, 1, 10);
+        assertTrue(limiter.allowRequest());
+        limiter.release(5 * MS, true);
+        assertEquals(5, limiter.getLimit());
+        // every round fills the limit and completes it; the releases after the first half find the limit
+        // less than half used, so a round grows it by about one half
+        for (int round = 0; round < 20; round++) {
+            int admitted = 0;
+            while (limiter.allowRequest()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                limiter.release(5 * MS);
+            }
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void releaseWithoutAllowRequestFails() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.aimd(0.5, 100 * MS), 3, 1, 10);
+        assertThrows(IllegalStateException.class, () -> limiter.release(5 * MS));
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(3, limiter.getLimit());
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.aimd(0.5, MS), 0, 1, 10));
+    }
+}
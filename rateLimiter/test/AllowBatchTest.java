@@ -0,0 +1,61 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/** allowBatch(n) against n back to back allowRequest() calls, for every single-stream limiter. */
+class AllowBatchTest {
+    static Stream<Arguments> limiters() {
+        return Stream.of(
+            limiter("TokenBucket", clock -> new TokenBucketRateLimiter(20, 50, clock)),
+            limiter("AtomicTokenBucket", clock -> new AtomicTokenBucketRateLimiter(20, 50, clock)),
+            limiter("LeakyBucket", clock -> new LeakyBucketRateLimiter(20, 50, clock)),
+            limiter("FixedWindow", clock -> new FixedWindowRateLimiter(20, 400, clock)),
+            limiter("SlidingWindowCounter", clock -> new SlidingWindowCounterRateLimiter(20, 400, 8, clock)),
+            limiter("SlidingWindowLog", clock -> new SlidingWindowLogRateLimiter(20, 400, SlidingWindowLogRateLimiter.Mode.EXACT, 0, clock)),
+            limiter("SlidingWindowLogApproximate", clock -> new SlidingWindowLogRateLimiter(20, 400, SlidingWindowLogRateLimiter.Mode.APPROXIMATE, 8, clock)),
+            limiter("ConcurrentSlidingWindowCounter", clock -> new ConcurrentSlidingWindowCounterRateLimiter(20, 400, 8, 1, clock)));
+    }
+
+    private static Arguments limiter(String name, Function<Clock, RateLimiter> factory) {
+        return Arguments.of(name, factory);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("limiters")
+    void batchMatchesRepeatedSingleCalls(String name, Function<Clock, RateLimiter> factory) {
+        Clock.Manual clock = new Clock.Manual();
+        RateLimiter batched = factory.apply(clock);
+        RateLimiter single = factory.apply(clock);
+        Random random = new Random(1);
+        for (int round = 0; round < 500; round++) {
+            int requested = random.nextInt(12);
+            int expected = 0;
+            for (int i = 0; i < requested; i++) {
+                if (single.allowRequest()) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, batched.allowBatch(requested), "round " + round);
+            assertEquals(single.availablePermits(), batched.availablePermits(), 1e-9, "round " + round);
+            clock.advance(random.nextInt(60), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("limiters")
+    void negativeBatchesAreRejected(String name, Function<Clock, RateLimiter> factory) {
+        RateLimiter limiter = factory.apply(new Clock.Manual());
+        assertEquals(0, limiter.allowBatch(0));
+        assertThrows(IllegalArgumentException.class, () -> limiter.allowBatch(-1));
+    }
+}
@@ -0,0 +1,92 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class AtomicTokenBucketRateLimiterTest {
+    private final Clock.Manual clock = new Clock.Manual();
+
+    private static int drain(RateLimiter limiter) {
+        int admitted = 0;
+        while (limiter.allowRequest()) {
+            admitted++;
+        }
+        return admitted;
+    }
+
+    @Test
+    void startsFullAndRefillsOneTokenPerInterval() {
+        AtomicTokenBucketRateLimiter limiter = new AtomicTokenBucketRateLimiter(5, 10, clock);
+        assertEquals(5, drain(limiter));
+        assertEquals(100_000_000L, limiter.nanosToNextPermit());
+
+        clock.advance(99, TimeUnit.MILLISECONDS);
+        assertFalse(limiter.allowRequest());
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        assertTrue(limiter.allowRequest());
+        assertFalse(limiter.allowRequest());
+
+        // partial intervals add up
+        clock.advance(50, TimeUnit.MILLISECONDS);
+        assertFalse(limiter.allowRequest());
+        clock.advance(50, TimeUnit.MILLISECONDS);
+        assertTrue(limiter.allowRequest());
+    }
+
+    @Test
+    void anIdleBucketNeverHoldsMoreThanItsCapacity() {
+        AtomicTokenBucketRateLimiter limiter = new AtomicTokenBucketRateLimiter(5, 10, clock);
+        drain(limiter);
+        clock.advance(1, TimeUnit.HOURS);
+        assertEquals(5.0, limiter.getTokens());
+        assertEquals(5, drain(limiter));
+    }
+
+    @Test
+    void permitsAreAllOrNothing() {
+        AtomicTokenBucketRateLimiter limiter = new AtomicTokenBucketRateLimiter(5, 10, clock);
+        assertTrue(limiter.tryAcquire(3));
+        assertFalse(limiter.tryAcquire(3));
+        assertEquals(2.0, limiter.getTokens());
+        assertFalse(limiter.tryAcquire(6)); // more than the capacity never succeeds
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire(0));
+    }
+
+    @Test
+    void refundsAreClampedToCapacity() {
+        AtomicTokenBucketRateLimiter limiter = new AtomicTokenBucketRateLimiter(5, 10, clock);
+        assertTrue(limiter.tryAcquire(4));
+        limiter.refund(3);
+        assertEquals(4.0, limiter.getTokens());
+        limiter.refund(10);
+        assertEquals(5.0, limiter.getTokens());
+    }
+
+    @Test
+    void concurrentCallersShareTheBucketExactly() throws InterruptedException {
+        AtomicTokenBucketRateLimiter limiter = new AtomicTokenBucketRateLimiter(10_000, 1, clock);
+        AtomicInteger admitted = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    if (limiter.allowRequest()) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(10_000, admitted.get());
+    }
+}
@@ -0,0 +1,70 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+
+class ClockTest {
+    private static long tickers() {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter(t -> t.getName().equals("coarse-clock") && t.isAlive())
+            .count();
+    }
+
+    @Test
+    void manualMovesOnlyForward() {
+        Clock.Manual clock = new Clock.Manual();
+        assertEquals(0, clock.nanoTime());
+        clock.advance(3, TimeUnit.MILLISECONDS);
+        assertEquals(3_000_000L, clock.nanoTime());
+        assertThrows(IllegalArgumentException.class, () -> clock.advance(-1, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    void manualDeadlinesAreMeasuredFromTheRealNow() {
+        Clock.Manual clock = new Clock.Manual();
+        clock.advance(1, TimeUnit.SECONDS);
+        long before = System.nanoTime();
+        long deadline = clock.toSystemNanos(clock.nanoTime() + 50_000_000L);
+        assertTrue(deadline - before >= 50_000_000L);
+        assertTrue(deadline - System.nanoTime() <= 50_000_000L);
+    }
+
+    @Test
+    void coarseFollowsSystemTimeWithinATick() {
+        long start = System.nanoTime();
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5)); // at least one tick of the shared clock
+        long coarse = Clock.coarse().nanoTime();
+        assertTrue(coarse - start > 0);
+        assertTrue(coarse - System.nanoTime() <= 0);
+    }
+
+    @Test
+    void closingACoarseClockStopsItsThread() {
+        Clock.coarse(); // the shared ticker is not ours to count
+        long before = tickers();
+        Clock.Coarse clock = new Clock.Coarse(1, TimeUnit.MILLISECONDS);
+        assertEquals(before + 1, tickers());
+        clock.close();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (tickers() > before && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(before, tickers());
+
+        long t0 = System.nanoTime();
+        long read = clock.nanoTime(); // a closed clock reads System.nanoTime() directly
+        assertTrue(read - t0 >= 0 && read - System.nanoTime() <= 0);
+    }
+
+    @Test
+    void theSharedCoarseClockCannotBeClosed() {
+        assertThrows(IllegalStateException.class, () -> ((Clock.Coarse) Clock.coarse()).close());
+        assertThrows(IllegalArgumentException.class, () -> new Clock.Coarse(0, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,68 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrentSlidingWindowCounterRateLimiterTest {
+    private final Clock.Manual clock = new Clock.Manual();
+
+    @Test
+    void bucketsLeaveTheWindowOneAtATime() {
+        ConcurrentSlidingWindowCounterRateLimiter limiter = new ConcurrentSlidingWindowCounterRateLimiter(10, 1000, 10, 1, clock);
+        assertEquals(6, limiter.allowBatch(6));
+        clock.advance(300, TimeUnit.MILLISECONDS);
+        assertEquals(4, limiter.allowBatch(6));
+        assertEquals(10, limiter.getRequestCount());
+        assertEquals(700_000_000L, limiter.nanosToNextPermit());
+
+        clock.advance(699, TimeUnit.MILLISECONDS);
+        assertEquals(0, limiter.allowBatch(1));
+        clock.advance(1, TimeUnit.MILLISECONDS); // the bucket at t=0 leaves
+        assertEquals(4, limiter.getRequestCount());
+        assertEquals(6, limiter.allowBatch(10));
+        clock.advance(5, TimeUnit.SECONDS);      // everything leaves, however long the gap
+        assertEquals(0, limiter.getRequestCount());
+    }
+
+    @Test
+    void stripeQuotasAddUpToTheLimit() {
+        ConcurrentSlidingWindowCounterRateLimiter limiter = new ConcurrentSlidingWindowCounterRateLimiter(10, 1000, 10, 3, clock);
+        assertEquals(10, limiter.allowBatch(20)); // an exhausted stripe falls back to the others
+        assertEquals(0.0, limiter.availablePermits());
+        assertEquals(1_000_000_000L, limiter.nanosToNextPermit());
+    }
+
+    @Test
+    void concurrentCallersNeverExceedTheLimit() throws InterruptedException {
+        ConcurrentSlidingWindowCounterRateLimiter limiter = new ConcurrentSlidingWindowCounterRateLimiter(10_000, 1000, 10, 4, clock);
+        AtomicInteger admitted = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    if (limiter.allowRequest()) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(10_000, admitted.get());
+        assertEquals(10_000, limiter.getRequestCount());
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentSlidingWindowCounterRateLimiter(0, 1000, 10));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentSlidingWindowCounterRateLimiter(10, 5, 10));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentSlidingWindowCounterRateLimiter(10, 1000, 10).allowBatch(-1));
+    }
+}
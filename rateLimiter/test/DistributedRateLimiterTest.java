@@ -0,0 +1,99 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class DistributedRateLimiterTest {
+    private final Clock.Manual clock = new Clock.Manual();
+    // the global bucket, on the same manual clock as the replicas
+    private final AtomicTokenBucketRateLimiter global = new AtomicTokenBucketRateLimiter(100, 50, clock);
+    private final AtomicInteger storeCalls = new AtomicInteger();
+    private final QuotaStore store = (key, requested, capacity, refillRatePerSecond) -> {
+        storeCalls.incrementAndGet();
+        return global.allowBatch(requested);
+    };
+
+    private DistributedRateLimiter replica(QuotaStore store) {
+        return new DistributedRateLimiter(store, "api", 100, 50, 10, 1000, clock);
+    }
+
+    @Test
+    void aLeaseIsSpentLocally() {
+        DistributedRateLimiter limiter = replica(store);
+        assertTrue(limiter.allowRequest());
+        assertEquals(10, limiter.getLeaseSize()); // a burst of demand leases the most it may
+        assertEquals(9.0, limiter.availablePermits());
+        assertEquals(9, limiter.allowBatch(9));
+        assertEquals(1, storeCalls.get());
+        assertEquals(90.0, global.availablePermits());
+    }
+
+    @Test
+    void unusedPermitsExpireWithTheLease() {
+        DistributedRateLimiter limiter = replica(store);
+        assertTrue(limiter.allowRequest());
+        clock.advance(1, TimeUnit.SECONDS);
+        assertEquals(0.0, limiter.availablePermits());
+        assertTrue(limiter.allowRequest());
+        assertEquals(2, storeCalls.get());
+    }
+
+    @Test
+    void replicasNeverAdmitMoreThanTheGlobalBucket() {
+        DistributedRateLimiter a = replica(store);
+        DistributedRateLimiter b = replica(store);
+        int admitted = 0;
+        for (int round = 0; round < 200; round++) {
+            admitted += a.allowBatch(7);
+            admitted += b.allowBatch(3);
+            clock.advance(10, TimeUnit.MILLISECONDS);
+        }
+        // burst 100, then 50/s for 2s
+        assertTrue(admitted <= 200, "admitted " + admitted);
+        assertTrue(admitted >= 150, "admitted " + admitted); // leases are small, little expires unused
+    }
+
+    @Test
+    void anEmptyStoreIsNotAskedAgainUntilTheBackOffEnds() {
+        DistributedRateLimiter limiter = replica((key, requested, capacity, refillRatePerSecond) -> {
+            storeCalls.incrementAndGet();
+            return 0;
+        });
+        assertFalse(limiter.allowRequest());
+        long backOff = limiter.nanosToNextPermit();
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), backOff); // 10 permits at 50/s, capped at 100ms
+        assertFalse(limiter.allowRequest());
+        assertEquals(1, storeCalls.get());
+
+        clock.advance(backOff, TimeUnit.NANOSECONDS);
+        assertFalse(limiter.allowRequest());
+        assertEquals(2, storeCalls.get());
+    }
+
+    @Test
+    void anUnreachableStoreFailsClosed() {
+        DistributedRateLimiter limiter = replica((key, requested, capacity, refillRatePerSecond) -> {
+            storeCalls.incrementAndGet();
+            throw new IOException("store down");
+        });
+        assertEquals(0, limiter.allowBatch(5));
+        assertTrue(limiter.nanosToNextPermit() > 0);
+        assertEquals(0, limiter.allowBatch(5));
+        assertEquals(1, storeCalls.get());
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new DistributedRateLimiter(store, "api", 10, 5, 11, 1000, clock));
+        assertThrows(IllegalArgumentException.class, () -> new DistributedRateLimiter(store, "api", 10, 5, 1, 0, clock));
+        assertThrows(IllegalArgumentException.class, () -> replica(store).allowBatch(-1));
+    }
+}
@@ -0,0 +1,57 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class HierarchicalRateLimiterTest {
+    private final Clock.Manual clock = new Clock.Manual();
+
+    @Test
+    void aTenantRejectionRefundsTheUser() {
+        HierarchicalRateLimiter limiter = new HierarchicalRateLimiter(5, 1, 3, 1, 100, 1, clock);
+        assertTrue(limiter.tryAcquire("acme", "alice", 3));
+        assertFalse(limiter.tryAcquire("acme", "bob", 2)); // acme is empty
+        assertEquals(1, limiter.evictIdle());              // so bob's bucket is full again
+    }
+
+    @Test
+    void aGlobalRejectionRefundsTheUserAndTheTenant() {
+        HierarchicalRateLimiter limiter = new HierarchicalRateLimiter(5, 1, 10, 1, 4, 1, clock);
+        assertTrue(limiter.tryAcquire("acme", "alice", 3));
+        assertFalse(limiter.tryAcquire("acme", "bob", 2)); // one permit left globally
+        assertTrue(limiter.allowRequest("beta", "carol"));
+        assertFalse(limiter.allowRequest("acme", "alice"));
+
+        clock.advance(1, TimeUnit.SECONDS);
+        assertEquals(3, limiter.evictIdle()); // bob, carol and beta are full, alice has 3 and acme 8
+        clock.advance(2, TimeUnit.SECONDS);
+        assertEquals(2, limiter.evictIdle()); // alice, and acme: full only if bob's 2 came back
+    }
+
+    @Test
+    void aBatchGetsTheMinimumOverTheLevels() {
+        HierarchicalRateLimiter limiter = new HierarchicalRateLimiter(5, 1, 20, 1, 6, 1, clock);
+        assertEquals(5, limiter.allowBatch("acme", "alice", 10)); // user limit
+        assertEquals(1, limiter.allowBatch("acme", "bob", 10));   // global limit
+        assertEquals(0, limiter.allowBatch("beta", "carol", 10));
+
+        clock.advance(1, TimeUnit.SECONDS); // bob is full again only if exactly one permit was charged to him
+        assertEquals(3, limiter.evictIdle()); // bob, carol and beta
+    }
+
+    @Test
+    void idleBucketsAreEvicted() {
+        HierarchicalRateLimiter limiter = new HierarchicalRateLimiter(5, 10, 10, 10, 100, 10, clock);
+        assertTrue(limiter.allowRequest("acme", "alice"));
+        assertTrue(limiter.allowRequest("acme", "bob"));
+        assertEquals(0, limiter.evictIdle());
+        clock.advance(1, TimeUnit.SECONDS);
+        assertEquals(3, limiter.evictIdle());
+        assertEquals(0, limiter.evictIdle());
+    }
+}
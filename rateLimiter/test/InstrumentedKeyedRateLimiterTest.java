@@ -0,0 +1,33 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class InstrumentedKeyedRateLimiterTest {
+    private final Clock.Manual clock = new Clock.Manual();
+
+    @Test
+    void countsDecisionsAndRanksTheRejectedKeys() {
+        InstrumentedKeyedRateLimiter<String> limiter = new InstrumentedKeyedRateLimiter<>(
+            new KeyedRateLimiter<>(KeyedRateLimiter.tokenBucket(2, 1), 4, 60_000, clock));
+        for (int i = 0; i < 10; i++) {
+            limiter.allowRequest("noisy");
+        }
+        for (int i = 0; i < 5; i++) {
+            limiter.allowRequest("busy");
+        }
+        limiter.allowRequest("quiet");
+        assertArrayEquals(new boolean[] {false, true, false},
+            limiter.allow(new String[] {"noisy", "quiet", "busy"}));
+
+        assertEquals(6, limiter.getAllowed());
+        assertEquals(13, limiter.getRejected());
+        List<TopOffenders.Entry<String>> top = limiter.topOffenders(5);
+        assertEquals(List.of("noisy=9", "busy=4"), top.stream().map(Object::toString).toList());
+        assertEquals(3, limiter.size());
+    }
+}
@@ -0,0 +1,37 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class InstrumentedRateLimiterTest {
+    private final Clock.Manual clock = new Clock.Manual();
+
+    @Test
+    void countsEveryDecisionOfTheDelegate() {
+        InstrumentedRateLimiter limiter = new InstrumentedRateLimiter(new TokenBucketRateLimiter(5, 10, clock));
+        assertTrue(limiter.allowRequest());
+        assertEquals(3, limiter.allowBatch(3));
+        assertEquals(1, limiter.allowBatch(4));
+        assertFalse(limiter.allowRequest());
+        assertEquals(0, limiter.allowBatch(0));
+        assertEquals(5, limiter.getAllowed());
+        assertEquals(4, limiter.getRejected());
+    }
+
+    @Test
+    void fillLevelComesFromTheDelegate() {
+        InstrumentedRateLimiter limiter = new InstrumentedRateLimiter(new TokenBucketRateLimiter(5, 10, clock));
+        assertEquals(5, limiter.allowBatch(5));
+        assertEquals(0.0, limiter.availablePermits());
+        assertEquals(100_000_000L, limiter.nanosToNextPermit());
+        clock.advance(250, TimeUnit.MILLISECONDS);
+        assertEquals(2.5, limiter.availablePermits(), 1e-9);
+        assertEquals(0, limiter.nanosToNextPermit());
+        assertEquals("allowed=5 rejected=0 available=2.5 nextPermitIn=0us", limiter.toString());
+    }
+}
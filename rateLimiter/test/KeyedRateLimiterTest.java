@@ -0,0 +1,114 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class KeyedRateLimiterTest {
+    private final Clock.Manual clock = new Clock.Manual();
+
+    private static int drain(KeyedRateLimiter<String> limiter, String key) {
+        int admitted = 0;
+        while (limiter.allowRequest(key)) {
+            admitted++;
+        }
+        return admitted;
+    }
+
+    @Test
+    void everyKeyHasItsOwnBucket() {
+        KeyedRateLimiter<String> limiter = new KeyedRateLimiter<>(KeyedRateLimiter.tokenBucket(3, 10), 4, 1000, clock);
+        assertEquals(3, drain(limiter, "alice"));
+        assertEquals(3, drain(limiter, "bob"));
+        clock.advance(100, TimeUnit.MILLISECONDS);
+        assertEquals(1, drain(limiter, "alice"));
+        clock.advance(1, TimeUnit.SECONDS);
+        assertEquals(3, drain(limiter, "bob"));
+    }
+
+    @Test
+    void algorithmsKeepTheirSingleStreamAccounting() {
+        KeyedRateLimiter<String> leaky = new KeyedRateLimiter<>(KeyedRateLimiter.leakyBucket(4, 10), 1, 1000, clock);
+        KeyedRateLimiter<String> fixed = new KeyedRateLimiter<>(KeyedRateLimiter.fixedWindow(4, 1000), 1, 1000, clock);
+        KeyedRateLimiter<String> log = new KeyedRateLimiter<>(KeyedRateLimiter.slidingWindowLog(4, 1000), 1, 1000, clock);
+        KeyedRateLimiter<String> counter = new KeyedRateLimiter<>(KeyedRateLimiter.slidingWindowCounter(4, 1000, 10), 1, 1000, clock);
+        assertEquals(4, drain(leaky, "k"));
+        assertEquals(4, drain(fixed, "k"));
+        assertEquals(4, drain(log, "k"));
+        assertEquals(4, drain(counter, "k"));
+
+        clock.advance(100, TimeUnit.MILLISECONDS); // one request leaks, the windows still hold all four
+        assertEquals(1, drain(leaky, "k"));
+        assertEquals(0, drain(fixed, "k"));
+        assertEquals(0, drain(log, "k"));
+        assertEquals(0, drain(counter, "k"));
+
+        clock.advance(900, TimeUnit.MILLISECONDS);
+        assertEquals(4, drain(fixed, "k"));
+        assertEquals(4, drain(log, "k"));
+        assertEquals(4, drain(counter, "k"));
+    }
+
+    @Test
+    void slidingWindowCounterHandlesNegativeClockReadings() {
+        long[] now = {-1_500_000_000L}; // nanoTime has an arbitrary origin, readings may be negative
+        Clock clock = () -> now[0];
+        KeyedRateLimiter<String> limiter = new KeyedRateLimiter<>(KeyedRateLimiter.slidingWindowCounter(4, 1000, 10), 1, 1000, clock);
+        assertEquals(4, drain(limiter, "k"));
+        now[0] += 999_000_000L;
+        assertEquals(0, drain(limiter, "k"));
+        now[0] += 1_000_000L;
+        assertEquals(4, drain(limiter, "k"));
+
+        // the algorithm itself on times below zero, across the bucket boundary at zero
+        KeyedRateLimiter.Algorithm algorithm = KeyedRateLimiter.slidingWindowCounter(4, 1000, 10);
+        long[] state = new long[algorithm.stateWords()];
+        algorithm.init(state, 0, -250_000_000L);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(algorithm.allow(state, 0, -250_000_000L));
+        }
+        assertFalse(algorithm.allow(state, 0, 50_000_000L));
+        assertFalse(algorithm.allow(state, 0, 699_000_000L));
+        assertTrue(algorithm.allow(state, 0, 700_000_000L)); // the bucket starting at -300ms has left the window
+    }
+
+    @Test
+    void batchesDecideLikeSingleCalls() {
+        KeyedRateLimiter<String> batched = new KeyedRateLimiter<>(KeyedRateLimiter.tokenBucket(3, 10), 4, 1000, clock);
+        KeyedRateLimiter<String> single = new KeyedRateLimiter<>(KeyedRateLimiter.tokenBucket(3, 10), 4, 1000, clock);
+        Random random = new Random(1);
+        for (int round = 0; round < 50; round++) {
+            String[] keys = new String[40];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = "client" + random.nextInt(8);
+            }
+            boolean[] expected = new boolean[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                expected[i] = single.allowRequest(keys[i]);
+            }
+            assertArrayEquals(expected, batched.allow(keys));
+            clock.advance(random.nextInt(300), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Test
+    void idleBucketsAreEvictedWithoutChangingDecisions() {
+        KeyedRateLimiter<String> limiter = new KeyedRateLimiter<>(KeyedRateLimiter.tokenBucket(3, 10), 1, 1000, clock);
+        for (int i = 0; i < 1000; i++) {
+            limiter.allowRequest("old" + i);
+        }
+        clock.advance(2, TimeUnit.SECONDS);
+        for (int i = 0; i < 2000; i++) { // the stripe fills up and is rebuilt without the idle buckets
+            limiter.allowRequest("new" + i);
+        }
+        assertTrue(limiter.size() <= 2000, "size " + limiter.size());
+        // an evicted key starts full again, as its refilled bucket would have been
+        assertEquals(3, drain(limiter, "old0"));
+    }
+}
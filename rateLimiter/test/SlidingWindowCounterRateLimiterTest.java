@@ -0,0 +1,37 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class SlidingWindowCounterRateLimiterTest {
+    private final Clock.Manual clock = new Clock.Manual();
+
+    @Test
+    void bucketsClearUnderSteadyTraffic() {
+        SlidingWindowCounterRateLimiter limiter = new SlidingWindowCounterRateLimiter(10, 1000, 10, clock);
+        assertEquals(5, limiter.allowBatch(5));
+        // calls closer together than a bucket, so no single step crosses a whole bucket
+        for (int t = 50; t < 1000; t += 50) {
+            clock.advance(50, TimeUnit.MILLISECONDS);
+            assertEquals(0, limiter.allowBatch(0));
+        }
+        assertEquals(5.0, limiter.availablePermits());
+        clock.advance(50, TimeUnit.MILLISECONDS); // t=1000: back in the bucket of t=0, which is cleared
+        assertEquals(10.0, limiter.availablePermits());
+    }
+
+    @Test
+    void enteringABucketKeepsTheLiveOnes() {
+        SlidingWindowCounterRateLimiter limiter = new SlidingWindowCounterRateLimiter(10, 1000, 10, clock);
+        clock.advance(500, TimeUnit.MILLISECONDS);
+        assertEquals(3, limiter.allowBatch(3));   // bucket 5
+        clock.advance(300, TimeUnit.MILLISECONDS);
+        assertEquals(4, limiter.allowBatch(4));   // bucket 8; buckets 6 to 8 are entered, 5 stays
+        assertEquals(3.0, limiter.availablePermits());
+        clock.advance(700, TimeUnit.MILLISECONDS); // t=1500: bucket 5 leaves, bucket 8 stays
+        assertEquals(6.0, limiter.availablePermits());
+    }
+}
@@ -0,0 +1,69 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import rateLimiter.SlidingWindowLogRateLimiter.Mode;
+
+class SlidingWindowLogRateLimiterTest {
+    private final Clock.Manual clock = new Clock.Manual();
+
+    @Test
+    void exactModeExpiresEachRequestOneWindowLater() {
+        SlidingWindowLogRateLimiter limiter = new SlidingWindowLogRateLimiter(4, 1000, Mode.EXACT, 0, clock);
+        assertEquals(2, limiter.allowBatch(2));
+        clock.advance(500, TimeUnit.MILLISECONDS);
+        assertEquals(2, limiter.allowBatch(5));
+
+        clock.advance(499, TimeUnit.MILLISECONDS);
+        assertEquals(0, limiter.allowBatch(1));
+        assertEquals(1_000_000L, limiter.nanosToNextPermit());
+        clock.advance(1, TimeUnit.MILLISECONDS); // the two from t=0 leave
+        assertEquals(2, limiter.allowBatch(5));
+        clock.advance(500, TimeUnit.MILLISECONDS); // the two from t=500 leave
+        assertEquals(2.0, limiter.availablePermits());
+    }
+
+    @Test
+    void approximateModeWeightsTheOldestSubWindow() {
+        SlidingWindowLogRateLimiter limiter = new SlidingWindowLogRateLimiter(10, 1000, Mode.APPROXIMATE, 10, clock);
+        assertEquals(10, limiter.allowBatch(20));
+        clock.advance(1000, TimeUnit.MILLISECONDS); // sub-window 0 still fully counted
+        assertEquals(0, limiter.allowBatch(1));
+        clock.advance(50, TimeUnit.MILLISECONDS);   // half of it has slid out
+        assertEquals(5, limiter.allowBatch(20));
+        clock.advance(50, TimeUnit.MILLISECONDS);   // all of it has
+        assertEquals(5, limiter.allowBatch(20));
+    }
+
+    @Test
+    void approximateMemoryDoesNotGrowWithTheLimit() {
+        long small = new SlidingWindowLogRateLimiter(10, 1000, Mode.APPROXIMATE, 10, clock).memoryFootprintBytes();
+        long large = new SlidingWindowLogRateLimiter(1_000_000, 1000, Mode.APPROXIMATE, 10, clock).memoryFootprintBytes();
+        assertEquals(small, large);
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowLogRateLimiter(10, 1000, Mode.APPROXIMATE, 7, clock));
+    }
+
+    @Test
+    void aZeroLimitRejectsEverythingForever() {
+        for (Mode mode : Mode.values()) {
+            SlidingWindowLogRateLimiter limiter = new SlidingWindowLogRateLimiter(0, 1000, mode, 10, clock);
+            assertEquals(0, limiter.allowBatch(3));
+            assertEquals(0.0, limiter.availablePermits());
+            assertEquals(Long.MAX_VALUE, limiter.nanosToNextPermit());
+            clock.advance(5, TimeUnit.SECONDS);
+            assertEquals(0, limiter.allowBatch(3));
+            assertEquals(Long.MAX_VALUE, limiter.nanosToNextPermit());
+        }
+    }
+
+    @Test
+    void aNegativeLimitIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowLogRateLimiter(-1, 1000, Mode.EXACT, 0, clock));
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowLogRateLimiter(-1, 1000, Mode.APPROXIMATE, 10, clock));
+    }
+}
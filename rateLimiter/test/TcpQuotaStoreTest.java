@@ -0,0 +1,62 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+
+class TcpQuotaStoreTest {
+    @Test
+    void takesFromTheServedStore() throws IOException {
+        try (TcpQuotaStore.Server server = new TcpQuotaStore.Server(0, new InMemoryQuotaStore());
+             TcpQuotaStore client = new TcpQuotaStore("localhost", server.getPort())) {
+            assertEquals(6, client.take("api", 6, 10, 1));
+            assertEquals(4, client.take("api", 6, 10, 1));
+            assertEquals(6, client.take("other", 6, 10, 1));
+        }
+    }
+
+    @Test
+    void aHungStoreTimesOut() throws IOException {
+        try (ServerSocket hung = new ServerSocket(0); // accepts through the backlog, never answers
+             TcpQuotaStore client = new TcpQuotaStore("localhost", hung.getLocalPort(), 100)) {
+            long start = System.nanoTime();
+            assertThrows(SocketTimeoutException.class, () -> client.take("api", 1, 10, 1));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+
+    @Test
+    void reconnectsAfterAFailedCall() throws IOException {
+        AtomicInteger calls = new AtomicInteger();
+        QuotaStore slowOnce = (key, requested, capacity, refillRatePerSecond) -> {
+            if (calls.incrementAndGet() == 1) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(500));
+            }
+            return requested;
+        };
+        try (TcpQuotaStore.Server server = new TcpQuotaStore.Server(0, slowOnce);
+             TcpQuotaStore client = new TcpQuotaStore("localhost", server.getPort(), 100)) {
+            assertThrows(SocketTimeoutException.class, () -> client.take("api", 1, 10, 1));
+            // the late answer went to the dropped connection, not to this call
+            assertEquals(3, client.take("api", 3, 10, 1));
+        }
+    }
+
+    @Test
+    void aClosedClientRefusesCalls() throws IOException {
+        try (TcpQuotaStore.Server server = new TcpQuotaStore.Server(0, new InMemoryQuotaStore())) {
+            TcpQuotaStore client = new TcpQuotaStore("localhost", server.getPort());
+            client.close();
+            assertThrows(IOException.class, () -> client.take("api", 1, 10, 1));
+        }
+    }
+}
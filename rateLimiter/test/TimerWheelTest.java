@@ -0,0 +1,74 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTest {
+    @Test
+    void tasksRunInDeadlineOrderAndNeverEarly() throws InterruptedException {
+        TimerWheel wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 8); // 8ms around, longer delays take several rounds
+        int[] delays = {50, 10, 30, 5, 20, 40, 1, 25};
+        long[] deadlines = new long[delays.length];
+        List<Integer> order = new ArrayList<>();
+        List<String> early = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(delays.length);
+        Runnable[] tasks = new Runnable[delays.length];
+        for (int i = 0; i < delays.length; i++) {
+            int n = i;
+            tasks[i] = () -> {
+                if (System.nanoTime() < deadlines[n]) {
+                    early.add(delays[n] + "ms");
+                }
+                order.add(delays[n]); // only the wheel thread writes
+                done.countDown();
+            };
+        }
+        // a margin, so no deadline passes before every task is scheduled
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+        for (int i = 0; i < delays.length; i++) {
+            deadlines[i] = start + TimeUnit.MILLISECONDS.toNanos(delays[i]);
+        }
+        for (int i = 0; i < delays.length; i++) {
+            wheel.scheduleAt(tasks[i], deadlines[i]);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 5, 10, 20, 25, 30, 40, 50), order);
+        assertEquals(List.of(), early);
+    }
+
+    @Test
+    void aFailingTaskGoesToTheUncaughtExceptionHandlerAndTheWheelKeepsRunning() throws InterruptedException {
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        AtomicReference<Throwable> reported = new AtomicReference<>();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> reported.set(e));
+        try {
+            TimerWheel wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 8);
+            IllegalStateException failure = new IllegalStateException("task failed");
+            CountDownLatch after = new CountDownLatch(1);
+            wheel.schedule(() -> {
+                throw failure;
+            }, 1, TimeUnit.MILLISECONDS);
+            wheel.schedule(after::countDown, 5, TimeUnit.MILLISECONDS);
+            assertTrue(after.await(5, TimeUnit.SECONDS));
+            assertSame(failure, reported.get());
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(previous);
+        }
+    }
+
+    @Test
+    void wheelSizeMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new TimerWheel(1, TimeUnit.MILLISECONDS, 100));
+        assertThrows(IllegalArgumentException.class, () -> new TimerWheel(0, TimeUnit.MILLISECONDS, 64));
+    }
+}
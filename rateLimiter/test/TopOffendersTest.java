@@ -0,0 +1,52 @@
+package rateLimiter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TopOffendersTest {
+    @Test
+    void countsAreExactWhileEveryKeyHasACounter() {
+        TopOffenders<String> offenders = new TopOffenders<>(8, 1);
+        offenders.record("a", 5);
+        offenders.record("b");
+        offenders.record("c", 3);
+        offenders.record("b");
+        assertEquals(List.of("a=5", "c=3"), offenders.top(2).stream().map(Object::toString).toList());
+        assertEquals(3, offenders.top(10).size());
+    }
+
+    @Test
+    void heavyHittersAreListedWithinTheirErrorBound() {
+        TopOffenders<String> offenders = new TopOffenders<>(16, 4);
+        Random random = new Random(7);
+        long[] truth = new long[3];
+        for (int i = 0; i < 100_000; i++) {
+            double r = random.nextDouble();
+            int heavy = r < 0.2 ? 0 : r < 0.3 ? 1 : r < 0.35 ? 2 : -1;
+            if (heavy >= 0) {
+                truth[heavy]++;
+                offenders.record("heavy-" + heavy);
+            } else {
+                offenders.record("client-" + random.nextInt(10_000));
+            }
+        }
+        List<TopOffenders.Entry<String>> top = offenders.top(3);
+        for (int i = 0; i < 3; i++) {
+            TopOffenders.Entry<String> entry = top.get(i);
+            assertEquals("heavy-" + i, entry.key);
+            assertTrue(entry.count >= truth[i] && entry.count - entry.error <= truth[i], entry.toString());
+        }
+    }
+
+    @Test
+    void stripeCountMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new TopOffenders<String>(8, 3));
+        assertThrows(IllegalArgumentException.class, () -> new TopOffenders<String>(0, 4));
+    }
+}
@@ -1,9 +1,31 @@
 package filter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.Adler32;
 import java.util.zip.CRC32;
 
 public class BloomFilter {
+    /**
+     * STANDARD: the k bits of a key anywhere in the filter, up to k cache misses per lookup.
+     * Blocked modes: the first hash picks a block, all k bits go inside it, so a lookup touches one cache line.
+     * CACHE_LINE blocks are 512 bits, TWO_WORDS 128 bits (both stored off heap, aligned to the block size) and
+     * ONE_WORD 64 bits (one load and one compare). Smaller blocks are faster but fill unevenly, so they need
+     * more bits for the same false positive probability; the filter is sized for that with blockedFpp().
+     */
+    public enum Mode {
+        STANDARD(0),
+        CACHE_LINE(512),
+        TWO_WORDS(128),
+        ONE_WORD(64);
+
+        final int blockBits;
+
+        Mode(int blockBits) {
+            this.blockBits = blockBits;
+        }
+    }
+
     private final int n;
     private double p = 0.5;
     private int k;
@@ -11,12 +33,45 @@ public class BloomFilter {
     private final int m;
     private final int bitSize = 64;
 
+    private final Mode mode;
+    private final int blocks;          // blocked modes
+    private final int blockWords;      // longs per block
+    private final int positionBits;    // log2(block bits), bits of hash per position
+    private final ByteBuffer aligned;  // CACHE_LINE, TWO_WORDS: block-aligned blocks, otherwise null
+
     public BloomFilter(int expectedMaxElements, double expectedFalsePositiveProbability, int k){
+        this(expectedMaxElements, expectedFalsePositiveProbability, k, Mode.STANDARD);
+    }
+
+    public BloomFilter(int expectedMaxElements, double expectedFalsePositiveProbability, int k, Mode mode){
         n = expectedMaxElements;
         p = expectedFalsePositiveProbability;
-        m = calculateM(n, k, p);
-        filter = new long[(m + bitSize - 1) / bitSize]; // to reduce memory size(use bit instead of byte)
         this.k = k;
+        this.mode = mode;
+        if (mode == Mode.STANDARD) {
+            m = calculateM(n, k, p);
+            filter = new long[(m + bitSize - 1) / bitSize]; // to reduce memory size(use bit instead of byte)
+            blocks = 0;
+            blockWords = 0;
+            positionBits = 0;
+            aligned = null;
+        } else {
+            blocks = calculateBlocks(n, k, p, mode);
+            m = blocks * mode.blockBits;
+            blockWords = mode.blockBits / bitSize;
+            positionBits = Integer.numberOfTrailingZeros(mode.blockBits);
+            if (blockWords > 1) {
+                // long[] data is only 8-byte aligned, so 16 and 64-byte blocks in one could straddle two cache lines
+                int blockBytes = blockWords * 8;
+                filter = null;
+                aligned = ByteBuffer.allocateDirect(blocks * blockBytes + blockBytes - 1)
+                    .alignedSlice(blockBytes).order(ByteOrder.nativeOrder());
+            } else {
+                // an 8-byte aligned word never crosses a cache line
+                filter = new long[blocks];
+                aligned = null;
+            }
+        }
     }
 
     public BloomFilter(int expectedMaxElements, double expectedFalsePositiveProbability){
@@ -24,6 +79,10 @@ public class BloomFilter {
     }
 
     public void add(String key){
+        if (mode != Mode.STANDARD) {
+            addBlocked(hash64(key));
+            return;
+        }
         int[] bitPositions = getFilterPos(key);
         for(int i = 0; i < bitPositions.length; i++){
             int pos = bitPositions[i];
@@ -35,28 +94,119 @@ public class BloomFilter {
     }
 
     public boolean isPresent(String key){
+        if (mode != Mode.STANDARD) {
+            return isPresentBlocked(hash64(key));
+        }
         int[] bitPositions = getFilterPos(key);
         boolean isBitSet = true;
         for(int i = 0; i < bitPositions.length && isBitSet; i++){
             int pos = bitPositions[i];
             int segmentPos = pos / bitSize;
             long mask = filter[segmentPos];
-            isBitSet &= (mask & (1L << (64 - (pos % bitSize)))) > 0;
+            isBitSet &= (mask & (1L << (64 - (pos % bitSize)))) != 0; // the bit may be the sign bit
         }
         return isBitSet;
     }
 
+    private void addBlocked(long hash) {
+        int first = blockOf(hash) * blockWords;
+        long bits = mix(hash);
+        int available = 64;
+        for (int i = 0; i < k; i++) {
+            if (available < positionBits) {
+                bits = mix(bits + i);
+                available = 64;
+            }
+            int pos = (int) bits & (mode.blockBits - 1);
+            bits >>>= positionBits;
+            available -= positionBits;
+            int word = first + (pos >>> 6);
+            setWord(word, word(word) | (1L << pos));
+        }
+    }
+
+    private boolean isPresentBlocked(long hash) {
+        int first = blockOf(hash) * blockWords;
+        long bits = mix(hash);
+        int available = 64;
+        if (blockWords == 1) {
+            // ONE_WORD: collect the k bits into one mask, one load
+            long mask = 0;
+            for (int i = 0; i < k; i++) {
+                if (available < positionBits) {
+                    bits = mix(bits + i);
+                    available = 64;
+                }
+                mask |= 1L << bits;
+                bits >>>= positionBits;
+                available -= positionBits;
+            }
+            return (filter[first] & mask) == mask;
+        }
+        for (int i = 0; i < k; i++) {
+            if (available < positionBits) {
+                bits = mix(bits + i);
+                available = 64;
+            }
+            int pos = (int) bits & (mode.blockBits - 1);
+            bits >>>= positionBits;
+            available -= positionBits;
+            if ((word(first + (pos >>> 6)) & (1L << pos)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the high half of the hash picks the block (multiply-shift, no modulo), the positions come from a remix
+    private int blockOf(long hash) {
+        return (int) (((hash >>> 32) * blocks) >>> 32);
+    }
+
+    private long word(int index) {
+        return aligned != null ? aligned.getLong(index << 3) : filter[index];
+    }
+
+    private void setWord(int index, long value) {
+        if (aligned != null) {
+            aligned.putLong(index << 3, value);
+        } else {
+            filter[index] = value;
+        }
+    }
+
+    // CRC32 and Adler32 of the key as one 64-bit value, computed from one encoding of the key
+    private static long hash64(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        Adler32 adler = new Adler32();
+        adler.update(bytes);
+        return mix((crc.getValue() << 32) ^ adler.getValue());
+    }
+
+    // MurmurHash3 fmix64 finalizer, spreads every input bit over all output bits
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
     private int[] getFilterPos(String key) {
         int[] hashes = new int[k];
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
 
         // Hash 1: CRC32
         CRC32 crc = new CRC32();
-        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        crc.update(bytes);
         int h1 = (int) crc.getValue();
 
         // Hash 2: Adler32
         Adler32 adler = new Adler32();
-        adler.update(key.getBytes(StandardCharsets.UTF_8));
+        adler.update(bytes);
         int h2 = (int) adler.getValue();
 
         for (int i = 0; i < k; i++) {
@@ -106,6 +256,75 @@ public class BloomFilter {
         return (int) Math.ceil(mDouble);
     }
 
+    /**
+     * Blocks of blockBits needed to stay under p with n elements. Keys do not spread evenly over blocks (the count
+     * per block is Poisson), the fuller blocks dominate the false positives, so blocked filters need more bits than
+     * calculateM: a few percent for cache-line blocks, more for word blocks.
+     */
+    static int calculateBlocks(int n, int k, double p, Mode mode) {
+        if (mode == Mode.STANDARD) {
+            throw new IllegalArgumentException("STANDARD is not a blocked mode, use calculateM.");
+        }
+        int blockBits = mode.blockBits;
+        long blocks = Math.max(1, calculateM(n, k, p) / blockBits);
+        while (falsePositiveProbability(mode, n, blocks * blockBits, k) > p) {
+            blocks += Math.max(1, blocks / 100);
+            if (blocks * blockBits > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                    "Blocked filter exceeds Integer.MAX_VALUE bits. Use a larger block, fewer hashes, or increase p."
+                );
+            }
+        }
+        return (int) blocks;
+    }
+
+    /**
+     * Expected false positive probability with n elements in m bits and k hashes.
+     *
+     * STANDARD: (1 - e^(-kn/m))^k.
+     * Blocked: the keys per block are Poisson with mean n / blocks. A block holding i keys has taken ki random
+     * bits; with X of its B bits set a lookup passes with probability (X/B)^k. X is tracked as an exact
+     * distribution, one bit at a time, rather than treating the bits as independent: that shortcut reads ~5% low
+     * for 64-bit blocks, where a few bits more or less matter.
+     */
+    public static double falsePositiveProbability(Mode mode, int n, long m, int k) {
+        if (n < 0 || m <= 0 || k <= 0) {
+            throw new IllegalArgumentException("n must be non-negative, m and k positive.");
+        }
+        if (mode == Mode.STANDARD) {
+            return Math.pow(1 - Math.exp(-(double) k * n / m), k);
+        }
+        int blockBits = mode.blockBits;
+        double lambda = (double) n * blockBits / m;
+        double[] pass = new double[blockBits + 1]; // (x/B)^k
+        for (int x = 0; x <= blockBits; x++) {
+            pass[x] = Math.pow((double) x / blockBits, k);
+        }
+        double[] set = new double[blockBits + 1];  // P(X = x) for the block's current key count
+        set[0] = 1;
+        double logPmf = -lambda; // Poisson(0), stepped in log space so a large mean does not underflow
+        double fpp = 0;
+        long last = (long) (lambda + 12 * Math.sqrt(lambda) + 20);
+        for (long i = 0; i <= last; i++) {
+            if (i > 0) {
+                logPmf += Math.log(lambda) - Math.log(i);
+                for (int j = 0; j < k; j++) {
+                    // one more random bit: stays at x if it hits a set bit, moves up from x - 1 otherwise
+                    for (int x = blockBits; x > 0; x--) {
+                        set[x] = set[x] * x / blockBits + set[x - 1] * (blockBits - x + 1) / blockBits;
+                    }
+                    set[0] = 0;
+                }
+            }
+            double given = 0;
+            for (int x = 0; x <= blockBits; x++) {
+                given += set[x] * pass[x];
+            }
+            fpp += Math.exp(logPmf) * given;
+        }
+        return fpp;
+    }
+
     public static void main(String[] args) {
         BloomFilter bloom = new BloomFilter(1_000_000, 0.01);
 
@@ -128,5 +347,38 @@ public class BloomFilter {
         for (String key : keysNotAdded) {
             System.out.println(key + ": " + bloom.isPresent(key)); // mostly false, may have some false positives
         }
+
+        // the modes side by side: bits used, predicted and measured false positives, lookup cost
+        int n = 2_000_000;
+        String[] present = new String[n];
+        String[] absent = new String[n];
+        for (int i = 0; i < n; i++) {
+            present[i] = "key-" + i;
+            absent[i] = "other-" + i;
+        }
+        System.out.println();
+        for (Mode mode : Mode.values()) {
+            BloomFilter filter = new BloomFilter(n, 0.01, 6, mode);
+            for (String key : present) {
+                filter.add(key);
+            }
+            int falseNegatives = 0;
+            for (String key : present) {
+                if (!filter.isPresent(key)) {
+                    falseNegatives++;
+                }
+            }
+            int falsePositives = 0;
+            long start = System.nanoTime();
+            for (String key : absent) {
+                if (filter.isPresent(key)) {
+                    falsePositives++;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%-10s m=%,d bits, predicted fpp %.4f, measured %.4f, false negatives %d, %.0f ns/lookup%n",
+                mode, filter.m, falsePositiveProbability(mode, n, filter.m, filter.k),
+                (double) falsePositives / n, falseNegatives, (double) nanos / n);
+        }
     }
 }
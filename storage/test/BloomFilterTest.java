@@ -0,0 +1,75 @@
+package filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import filter.BloomFilter.Mode;
+
+class BloomFilterTest {
+    private static final int N = 100_000;
+    private static final double P = 0.01;
+
+    private static BloomFilter filled(Mode mode) {
+        BloomFilter filter = new BloomFilter(N, P, 7, mode);
+        for (int i = 0; i < N; i++) {
+            filter.add("key-" + i);
+        }
+        return filter;
+    }
+
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    void everyAddedKeyIsPresent(Mode mode) {
+        BloomFilter filter = filled(mode);
+        for (int i = 0; i < N; i++) {
+            assertTrue(filter.isPresent("key-" + i), "key-" + i);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    void falsePositivesStayNearTheRequestedProbability(Mode mode) {
+        BloomFilter filter = filled(mode);
+        int probes = 200_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (filter.isPresent("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+        double measured = (double) falsePositives / probes;
+        assertTrue(measured <= P * 1.2, mode + " measured " + measured); // the standard error is ~2% of p
+    }
+
+    @Test
+    void blockedFiltersNeedMoreBitsForTheSameProbability() {
+        int standard = BloomFilter.calculateM(N, 7, P);
+        long previous = standard;
+        for (Mode mode : new Mode[] {Mode.CACHE_LINE, Mode.TWO_WORDS, Mode.ONE_WORD}) {
+            long bits = (long) BloomFilter.calculateBlocks(N, 7, P, mode) * mode.blockBits;
+            assertTrue(bits > previous, mode + " " + bits);
+            assertTrue(BloomFilter.falsePositiveProbability(mode, N, bits, 7) <= P);
+            previous = bits;
+        }
+    }
+
+    @Test
+    void standardProbabilityIsTheTextbookFormula() {
+        int m = BloomFilter.calculateM(N, 7, P);
+        assertEquals(P, BloomFilter.falsePositiveProbability(Mode.STANDARD, N, m, 7), P * 1e-3);
+        assertEquals(0.0, BloomFilter.falsePositiveProbability(Mode.CACHE_LINE, 0, 512, 7));
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.calculateM(N, 7, 1.0));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.calculateM(0, 7, P));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.calculateBlocks(N, 7, P, Mode.STANDARD));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.falsePositiveProbability(Mode.ONE_WORD, N, 0, 7));
+    }
+}